@@ -0,0 +1,171 @@
+package chess.db;
+
+import chess.game.Game;
+import chess.game.Move;
+import chess.game.Piece;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+/**
+ * An opening book read from a file written by {@code OpeningBookBuilder}. The
+ * file is memory-mapped, nothing is read when it is opened, and a probe goes
+ * straight to the bucket of the position's hash, so it costs a couple of page
+ * reads and creates no objects.
+ *
+ * <pre>
+ * magic     int      "CHBK"
+ * version   int
+ * bits      int      the number of high hash bits that pick a bucket
+ * count     int      the number of entries
+ * buckets   2^bits + 1 ints, the first entry of each bucket and the count
+ * entries   count times, sorted by hash then by weight, highest first:
+ *   hash    long     the hash of the position, as by {@code Game.getHash()}
+ *   move    short    packed as by {@code Move.encode}
+ *   weight  short    unsigned, how often the move was played
+ * </pre>
+ *
+ * @author Jurgen Aliaj
+ */
+public class OpeningBook implements Closeable {
+
+    static final int MAGIC = 0x4348424B; // "CHBK"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int ENTRY_SIZE = 12;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer map;
+    private final int bits;
+    private final int count;
+    private final int entries; // where the entries start
+
+    /**
+     * Opens a book file
+     *
+     * @param f the file
+     * @throws IOException if the file cannot be read or is not a book
+     */
+    public OpeningBook(File f) throws IOException {
+        file = new RandomAccessFile(f, "r");
+        try {
+            if (file.length() > Integer.MAX_VALUE) {
+                throw new IOException("Opening book is too large: " + f);
+            }
+            map = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            if (map.limit() < HEADER_SIZE || map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+                throw new IOException("Not an opening book: " + f);
+            }
+            bits = map.getInt(8);
+            count = map.getInt(12);
+            if (bits < 0 || bits > 24 || count < 0) {
+                throw new IOException("Not an opening book: " + f);
+            }
+            entries = HEADER_SIZE + ((1 << bits) + 1) * 4;
+            if ((long) entries + (long) count * ENTRY_SIZE > map.limit()) {
+                throw new IOException("Opening book is truncated: " + f);
+            }
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Gets the number of moves in the book
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Gets the book move played most often in the current position of a game
+     *
+     * @param game the game
+     * @return the packed move, or {@code Move.NONE} if the position is not in
+     * the book
+     */
+    public int probe(Game game) {
+        long hash = game.getHash();
+        for (int i = first(hash); i < count && hash(i) == hash; i++) {
+            int move = move(i);
+            if (isLegal(game, move)) {
+                return move;
+            }
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * Picks a book move at random, each move as likely as its weight
+     *
+     * @param game the game
+     * @param random where the choice comes from
+     * @return the packed move, or {@code Move.NONE} if the position is not in
+     * the book
+     */
+    public int probe(Game game, Random random) {
+        long hash = game.getHash();
+        int from = first(hash);
+        long total = 0;
+        for (int i = from; i < count && hash(i) == hash; i++) {
+            total += weight(i);
+        }
+        if (total == 0) {
+            return Move.NONE;
+        }
+        long pick = (long) (random.nextDouble() * total);
+        for (int i = from; i < count && hash(i) == hash; i++) {
+            pick -= weight(i);
+            if (pick < 0) {
+                int move = move(i);
+                return isLegal(game, move) ? move : probe(game);
+            }
+        }
+        return probe(game);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Gets the first entry of a hash, or where it would be
+     */
+    private int first(long hash) {
+        int bucket = (int) (hash >>> (64 - bits)) & ((1 << bits) - 1);
+        int i = map.getInt(HEADER_SIZE + bucket * 4);
+        int end = map.getInt(HEADER_SIZE + (bucket + 1) * 4);
+        while (i < end && hash(i) != hash) {
+            i++;
+        }
+        return i < end ? i : count;
+    }
+
+    private long hash(int i) {
+        return map.getLong(entries + i * ENTRY_SIZE);
+    }
+
+    private int move(int i) {
+        return map.getShort(entries + i * ENTRY_SIZE + 8) & 0xFFFF;
+    }
+
+    private int weight(int i) {
+        return map.getShort(entries + i * ENTRY_SIZE + 10) & 0xFFFF;
+    }
+
+    /**
+     * Checks a book move against the rules, in case of a hash collision
+     */
+    private static boolean isLegal(Game game, int move) {
+        Piece p = game.board[Move.getFromRow(move)][Move.getFromCol(move)].getPiece();
+        return p != null && p.getColor() == game.getCurrentTurn()
+                && p.isValidMove(game.board[Move.getToRow(move)][Move.getToCol(move)]);
+    }
+}
@@ -0,0 +1,178 @@
+package chess.db;
+
+import chess.game.Game;
+import chess.pgn.PgnGame;
+import chess.pgn.PgnReplay;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the file read by {@code OpeningBook} from the opening moves of many
+ * games. Each move is weighted by how often it was played, a win counting
+ * twice as much as a draw and a loss not at all.
+ *
+ * @author Jurgen Aliaj
+ */
+public class OpeningBookBuilder {
+
+    /**
+     * the number of half moves of each game that go in the book
+     */
+    public static final int DEFAULT_DEPTH = 24;
+    private final int depth;
+    /**
+     * the weight of each move played in each position
+     */
+    private final Map<Long, Map<Integer, Integer>> positions = new HashMap<>();
+
+    public OpeningBookBuilder() {
+        this(DEFAULT_DEPTH);
+    }
+
+    /**
+     * Creates a builder
+     *
+     * @param depth the number of half moves of each game that go in the book
+     */
+    public OpeningBookBuilder(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * Adds the opening moves of a game
+     *
+     * @param game the game, after its last move
+     * @param result the result, 1-0, 0-1, 1/2-1/2 or *
+     */
+    public synchronized void add(Game game, String result) {
+        int plies = Math.min(game.getPly(), depth);
+        for (int ply = 0; ply < plies; ply++) {
+            //the side to move at this ply, for a game that starts with white to move
+            int turn = (game.getStartPly() + ply) % 2;
+            int weight = result.equals("1/2-1/2") || result.equals("*") ? 1
+                    : result.equals(turn == Game.WHITE ? "1-0" : "0-1") ? 2 : 0;
+            if (weight == 0) {
+                continue;
+            }
+            Map<Integer, Integer> moves = positions.get(game.getHash(ply));
+            if (moves == null) {
+                moves = new HashMap<>(4);
+                positions.put(game.getHash(ply), moves);
+            }
+            Integer old = moves.get(game.getMove(ply));
+            moves.put(game.getMove(ply), old == null ? weight : old + weight);
+        }
+    }
+
+    /**
+     * Writes the book
+     *
+     * @param out the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void write(File out) throws IOException {
+        //sort the positions by hash as unsigned numbers, so that buckets are in order
+        long[] hashes = new long[positions.size()];
+        int n = 0;
+        for (Long hash : positions.keySet()) {
+            hashes[n++] = hash ^ Long.MIN_VALUE;
+        }
+        Arrays.sort(hashes);
+        int count = 0;
+        for (Map<Integer, Integer> moves : positions.values()) {
+            count += moves.size();
+        }
+        //about one position per bucket
+        int bits = 0;
+        while (bits < 24 && 1 << bits < hashes.length) {
+            bits++;
+        }
+        int[] buckets = new int[(1 << bits) + 1];
+        int entry = 0;
+        for (int i = 0, bucket = 0; i < hashes.length; i++) {
+            long hash = hashes[i] ^ Long.MIN_VALUE;
+            int b = bits == 0 ? 0 : (int) (hash >>> (64 - bits));
+            while (bucket <= b) {
+                buckets[bucket++] = entry;
+            }
+            entry += positions.get(hash).size();
+            if (i == hashes.length - 1) {
+                while (bucket < buckets.length) {
+                    buckets[bucket++] = entry;
+                }
+            }
+        }
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(out)))) {
+            dos.writeInt(OpeningBook.MAGIC);
+            dos.writeInt(OpeningBook.VERSION);
+            dos.writeInt(bits);
+            dos.writeInt(count);
+            for (int i = 0; i < buckets.length; i++) {
+                dos.writeInt(buckets[i]);
+            }
+            for (int i = 0; i < hashes.length; i++) {
+                long hash = hashes[i] ^ Long.MIN_VALUE;
+                Map<Integer, Integer> moves = positions.get(hash);
+                int max = 0;
+                for (int weight : moves.values()) {
+                    max = Math.max(max, weight);
+                }
+                //the most played move first
+                List<Map.Entry<Integer, Integer>> sorted = new ArrayList<>(moves.entrySet());
+                for (int j = 1; j < sorted.size(); j++) {
+                    for (int k = j; k > 0 && sorted.get(k - 1).getValue() < sorted.get(k).getValue(); k--) {
+                        sorted.set(k, sorted.set(k - 1, sorted.get(k)));
+                    }
+                }
+                for (Map.Entry<Integer, Integer> move : sorted) {
+                    dos.writeLong(hash);
+                    dos.writeShort(move.getKey());
+                    //weights are scaled down to fit in 16 bits, keeping every move at least 1
+                    dos.writeShort(max <= 0xFFFF ? move.getValue()
+                            : (int) Math.max(1, (long) move.getValue() * 0xFFFF / max));
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds a book from a PGN file, ex
+     * {@code java chess.db.OpeningBookBuilder games.pgn book.bin}
+     *
+     * @param args the PGN file, the book file and optionally the depth in half
+     * moves
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: OpeningBookBuilder games.pgn book.bin [depth]");
+            return;
+        }
+        final OpeningBookBuilder builder = new OpeningBookBuilder(
+                args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DEPTH);
+        try {
+            new PgnReplay().replay(new FileInputStream(args[0]), new PgnReplay.Listener() {
+                @Override
+                public void replayed(PgnGame pgn, Game game) {
+                    builder.add(game, pgn.getResult());
+                }
+
+                @Override
+                public void failed(PgnGame pgn, IllegalArgumentException ex) {
+                    System.err.println(ex.getMessage());
+                }
+            });
+            builder.write(new File(args[1]));
+        } catch (IOException | InterruptedException ex) {
+            System.err.println(ex);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package chess.db;
+
+import chess.game.Game;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the games that reached a position, using an index file written by
+ * {@code PositionIndexBuilder}. The file is memory-mapped and searched in
+ * place with a binary search, so opening it costs nothing and a query touches
+ * a few pages whatever the size of the archive.
+ *
+ * <pre>
+ * magic    int       "CHIX"
+ * version  int
+ * count    long      the number of entries
+ * entries  count times, sorted by hash then game then ply:
+ *   hash   long      the hash of the position, as by {@code Game.getHash()}
+ *   game   6 bytes   the number of the game in the archive
+ *   ply    short     the half moves played in that game to reach the position
+ * </pre>
+ *
+ * @author Jurgen Aliaj
+ */
+public class PositionIndex implements Closeable {
+
+    static final int MAGIC = 0x43484958; // "CHIX"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int ENTRY_SIZE = 16;
+    /**
+     * entries per mapping, a mapping cannot be larger than 2GB
+     */
+    private static final int ENTRIES_PER_MAP = 1 << 26;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer[] maps;
+    private final long count;
+
+    /**
+     * A game and the point in it where a position was reached
+     */
+    public static final class Entry {
+
+        private final long game;
+        private final int ply;
+
+        Entry(long game, int ply) {
+            this.game = game;
+            this.ply = ply;
+        }
+
+        /**
+         * Gets the number of the game in the archive
+         *
+         * @return the game's id
+         */
+        public long getGame() {
+            return game;
+        }
+
+        /**
+         * Gets the number of half moves played in the game to reach the
+         * position
+         *
+         * @return the ply
+         */
+        public int getPly() {
+            return ply;
+        }
+
+        @Override
+        public String toString() {
+            return "game " + game + " ply " + ply;
+        }
+    }
+
+    /**
+     * Opens an index file
+     *
+     * @param f the file
+     * @throws IOException if the file cannot be read or is not an index
+     */
+    public PositionIndex(File f) throws IOException {
+        file = new RandomAccessFile(f, "r");
+        try {
+            if (file.readInt() != MAGIC || file.readInt() != VERSION) {
+                throw new IOException("Not a position index: " + f);
+            }
+            count = file.readLong();
+            if (count < 0 || HEADER_SIZE + count * ENTRY_SIZE > file.length()) {
+                throw new IOException("Position index is truncated: " + f);
+            }
+            FileChannel channel = file.getChannel();
+            maps = new MappedByteBuffer[(int) ((count + ENTRIES_PER_MAP - 1) / ENTRIES_PER_MAP)];
+            for (int i = 0; i < maps.length; i++) {
+                long first = (long) i * ENTRIES_PER_MAP;
+                long size = Math.min(ENTRIES_PER_MAP, count - first) * ENTRY_SIZE;
+                maps[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * ENTRY_SIZE, size);
+            }
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Gets the number of positions in the index
+     *
+     * @return the number of entries
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Finds every game that reached the current position of a game
+     *
+     * @param game the game
+     * @return the games and plies, in the order of the games
+     */
+    public List<Entry> find(Game game) {
+        return find(game.getHash());
+    }
+
+    /**
+     * Finds every game that reached a position
+     *
+     * @param hash the hash of the position
+     * @return the games and plies, in the order of the games
+     */
+    public List<Entry> find(long hash) {
+        List<Entry> found = new ArrayList<>();
+        for (long i = first(hash); i < count && hash(i) == hash; i++) {
+            long payload = payload(i);
+            found.add(new Entry(payload >>> 16, (int) (payload & 0xFFFF)));
+        }
+        return found;
+    }
+
+    /**
+     * Counts the games that reached a position, without creating the entries
+     *
+     * @param hash the hash of the position
+     * @return the number of times it was reached
+     */
+    public long count(long hash) {
+        long i = first(hash);
+        long j = i;
+        while (j < count && hash(j) == hash) {
+            j++;
+        }
+        return j - i;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Gets the first entry with a hash not less than the one given
+     */
+    private long first(long hash) {
+        long low = 0, high = count;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (hash(mid) < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long hash(long i) {
+        return maps[(int) (i / ENTRIES_PER_MAP)].getLong((int) (i % ENTRIES_PER_MAP) * ENTRY_SIZE);
+    }
+
+    private long payload(long i) {
+        return maps[(int) (i / ENTRIES_PER_MAP)].getLong((int) (i % ENTRIES_PER_MAP) * ENTRY_SIZE + 8);
+    }
+}
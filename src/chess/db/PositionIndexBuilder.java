@@ -0,0 +1,260 @@
+package chess.db;
+
+import chess.game.Game;
+import chess.pgn.PgnGame;
+import chess.pgn.PgnReplay;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Writes the index file read by {@code PositionIndex}. Positions are gathered
+ * in memory a run at a time; each full run is sorted and written to a
+ * temporary file, and {@code close()} merges the runs into the index. Memory
+ * use is bounded by the run size, not by the number of games.
+ *
+ * @author Jurgen Aliaj
+ */
+public class PositionIndexBuilder implements Closeable {
+
+    private static final int RUN_SIZE = 1 << 20;
+    private final File out;
+    private final long[] hashes;
+    private final long[] payloads;
+    private int size;
+    private final List<File> runs = new ArrayList<>();
+
+    /**
+     * Creates a builder
+     *
+     * @param out the index file to write when the builder is closed
+     */
+    public PositionIndexBuilder(File out) {
+        this(out, RUN_SIZE);
+    }
+
+    /**
+     * Creates a builder
+     *
+     * @param out the index file to write when the builder is closed
+     * @param runSize the number of positions sorted in memory at once
+     */
+    public PositionIndexBuilder(File out, int runSize) {
+        this.out = out;
+        hashes = new long[runSize];
+        payloads = new long[runSize];
+    }
+
+    /**
+     * Adds every position reached in a game, the starting position included
+     *
+     * @param id the number of the game in the archive, below 2^47
+     * @param game the game, after its last move
+     * @throws IOException if a full run cannot be written
+     */
+    public synchronized void add(long id, Game game) throws IOException {
+        if (id < 0 || id >= 1L << 47) {
+            throw new IllegalArgumentException("Bad game id: " + id);
+        }
+        //the ply is kept in 16 bits, longer games are only indexed that far
+        int plies = Math.min(game.getPly(), 0xFFFF);
+        for (int ply = 0; ply <= plies; ply++) {
+            if (size == hashes.length) {
+                writeRun();
+            }
+            hashes[size] = game.getHash(ply);
+            payloads[size++] = id << 16 | ply;
+        }
+    }
+
+    /**
+     * Merges everything added into the index file
+     *
+     * @throws IOException if the index cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        writeRun();
+        PriorityQueue<Run> queue = new PriorityQueue<>(Math.max(1, runs.size()));
+        long count = 0;
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(out), 1 << 16))) {
+            dos.writeInt(PositionIndex.MAGIC);
+            dos.writeInt(PositionIndex.VERSION);
+            dos.writeLong(0); // the count, filled in at the end
+            for (File f : runs) {
+                Run run = new Run(f);
+                if (run.next()) {
+                    queue.add(run);
+                } else {
+                    run.close();
+                }
+            }
+            while (!queue.isEmpty()) {
+                Run run = queue.poll();
+                dos.writeLong(run.hash);
+                dos.writeLong(run.payload);
+                count++;
+                if (run.next()) {
+                    queue.add(run);
+                } else {
+                    run.close();
+                }
+            }
+        } finally {
+            for (Run run : queue) {
+                run.close();
+            }
+            for (File f : runs) {
+                f.delete();
+            }
+            runs.clear();
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(out, "rw")) {
+            raf.seek(8);
+            raf.writeLong(count);
+        }
+    }
+
+    /**
+     * Sorts the positions in memory and writes them to a temporary file
+     */
+    private void writeRun() throws IOException {
+        if (size == 0) {
+            return;
+        }
+        sort(0, size - 1);
+        File f = File.createTempFile("positions", ".run", out.getAbsoluteFile().getParentFile());
+        runs.add(f);
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), 1 << 16))) {
+            for (int i = 0; i < size; i++) {
+                dos.writeLong(hashes[i]);
+                dos.writeLong(payloads[i]);
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * Sorts the two arrays together by hash, then by game and ply
+     */
+    private void sort(int low, int high) {
+        while (high - low > 16) {
+            int mid = (low + high) >>> 1;
+            long pivotHash = hashes[mid], pivotPayload = payloads[mid];
+            int i = low, j = high;
+            while (i <= j) {
+                while (compare(hashes[i], payloads[i], pivotHash, pivotPayload) < 0) {
+                    i++;
+                }
+                while (compare(hashes[j], payloads[j], pivotHash, pivotPayload) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            //recurse into the smaller half so the stack stays shallow
+            if (j - low < high - i) {
+                sort(low, j);
+                low = i;
+            } else {
+                sort(i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && compare(hashes[j - 1], payloads[j - 1], hashes[j], payloads[j]) > 0; j--) {
+                swap(j - 1, j);
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        long t = hashes[i];
+        hashes[i] = hashes[j];
+        hashes[j] = t;
+        t = payloads[i];
+        payloads[i] = payloads[j];
+        payloads[j] = t;
+    }
+
+    private static int compare(long hash1, long payload1, long hash2, long payload2) {
+        return hash1 != hash2 ? (hash1 < hash2 ? -1 : 1) : Long.compare(payload1, payload2);
+    }
+
+    /**
+     * A sorted run being merged, holding its smallest entry not yet written
+     */
+    private static class Run implements Comparable<Run> {
+
+        private final DataInputStream in;
+        private long hash, payload;
+
+        Run(File f) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1 << 16));
+        }
+
+        boolean next() throws IOException {
+            try {
+                hash = in.readLong();
+            } catch (EOFException ex) {
+                return false;
+            }
+            payload = in.readLong();
+            return true;
+        }
+
+        void close() throws IOException {
+            in.close();
+        }
+
+        @Override
+        public int compareTo(Run o) {
+            return compare(hash, payload, o.hash, o.payload);
+        }
+    }
+
+    /**
+     * Builds the index of a PGN file, ex
+     * {@code java chess.db.PositionIndexBuilder games.pgn games.idx}. Games
+     * are numbered from 0 in the order of the file.
+     *
+     * @param args the PGN file and the index file
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: PositionIndexBuilder games.pgn games.idx");
+            return;
+        }
+        try (final PositionIndexBuilder builder = new PositionIndexBuilder(new File(args[1]))) {
+            new PgnReplay().replay(new FileInputStream(args[0]), new PgnReplay.Listener() {
+                @Override
+                public void replayed(PgnGame pgn, Game game) {
+                    try {
+                        builder.add(pgn.getNumber(), game);
+                    } catch (IOException ex) {
+                        System.err.println(ex);
+                    }
+                }
+
+                @Override
+                public void failed(PgnGame pgn, IllegalArgumentException ex) {
+                    System.err.println(ex.getMessage());
+                }
+            });
+        } catch (IOException | InterruptedException ex) {
+            System.err.println(ex);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package chess.endgame;
+
+import chess.game.Game;
+import chess.game.Piece;
+import chess.game.Position;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Knows the result of every position with a king and a pawn, rook or queen
+ * against a lone king, from bitbases made by {@code BitbaseGenerator}. Each
+ * ending takes one bit per position (64KB): set if the side with the extra
+ * piece wins, clear if it is a draw. The tables are read the first time they
+ * are probed.
+ *
+ * @author Jurgen Aliaj
+ */
+public final class Bitbase {
+
+    /**
+     * results of {@code probe}, for the side to move
+     */
+    public static final int UNKNOWN = 0;
+    public static final int WIN = 1;
+    public static final int DRAW = 2;
+    public static final int LOSS = 3;
+    /**
+     * the side to move in an index, the side with the extra piece or the lone
+     * king
+     */
+    static final int STRONG = 0;
+    static final int WEAK = 1;
+    /**
+     * the number of positions in a bitbase: side to move and three squares
+     */
+    static final int SIZE = 2 * 64 * 64 * 64;
+    private static final long[] MISSING = new long[0];
+    private static long[] pawn, rook, queen;
+
+    private Bitbase() {
+    }
+
+    /**
+     * Gets the index of a position, with the strong side playing up the board
+     */
+    static int index(int stm, int strong, int weak, int piece) {
+        return ((stm * 64 + strong) * 64 + weak) * 64 + piece;
+    }
+
+    /**
+     * Looks up the result of the current position of a game
+     *
+     * @param game the game
+     * @return {@code WIN}, {@code DRAW} or {@code LOSS} for the side to move,
+     * or {@code UNKNOWN} if the position is not one of the endings known or
+     * its table cannot be read
+     */
+    public static int probe(Game game) {
+        Piece extra = null;
+        int pieces = 0;
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                Piece p = game.board[row][col].getPiece();
+                if (p != null && ++pieces > 3) {
+                    return UNKNOWN;
+                }
+                if (p != null && p.getType() != Piece.KING) {
+                    extra = p;
+                }
+            }
+        }
+        if (pieces != 3 || extra == null) {
+            return UNKNOWN;
+        }
+        long[] table = table(extra.getType());
+        if (table == null) {
+            return UNKNOWN;
+        }
+        int color = extra.getColor();
+        Position strong = game.getKingPosition(color);
+        Position weak = game.getKingPosition(1 - color);
+        int stm = game.getCurrentTurn() == color ? STRONG : WEAK;
+        int index = index(stm, square(strong, color), square(weak, color), square(extra.getPosition(), color));
+        if (!BitbaseGenerator.isSet(table, index)) {
+            return DRAW;
+        }
+        return stm == STRONG ? WIN : LOSS;
+    }
+
+    /**
+     * Whether the current position is a draw with best play, as far as the
+     * bitbases know
+     *
+     * @param game the game
+     * @return whether the position is a known draw
+     */
+    public static boolean isDraw(Game game) {
+        return probe(game) == DRAW;
+    }
+
+    /**
+     * Gets the square of a position as seen by the strong side, so that black
+     * pawns also move up the board
+     */
+    private static int square(Position pos, int color) {
+        int row = color == Game.WHITE ? pos.getRow() : 7 - pos.getRow();
+        return row * 8 + pos.getCol();
+    }
+
+    private static synchronized long[] table(int type) {
+        long[] table = null;
+        switch (type) {
+            case Piece.PAWN:
+                if (pawn == null) {
+                    pawn = load("kpk.bin");
+                }
+                table = pawn;
+                break;
+            case Piece.ROOK:
+                if (rook == null) {
+                    rook = load("krk.bin");
+                }
+                table = rook;
+                break;
+            case Piece.QUEEN:
+                if (queen == null) {
+                    queen = load("kqk.bin");
+                }
+                table = queen;
+                break;
+        }
+        return table == MISSING ? null : table;
+    }
+
+    /**
+     * Reads a bitbase from the classpath, giving {@code MISSING} if it cannot
+     * be read so that it is not looked for again
+     */
+    private static long[] load(String name) {
+        long[] bits = new long[SIZE / 64];
+        InputStream in = Bitbase.class.getResourceAsStream(name);
+        if (in == null) {
+            System.err.println("Bitbase not found: " + name);
+            return MISSING;
+        }
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(in))) {
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = dis.readLong();
+            }
+        } catch (IOException ex) {
+            System.err.println(ex);
+            return MISSING;
+        }
+        return bits;
+    }
+}
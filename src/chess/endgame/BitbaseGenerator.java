@@ -0,0 +1,245 @@
+package chess.endgame;
+
+import chess.game.Piece;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Generates the bitbases read by {@code Bitbase}. Every position of an ending
+ * is marked won once it is known to be: the strong side to move wins if one of
+ * its moves reaches a won position, the weak side to move loses if it is
+ * mated or every one of its moves reaches a won position. Passes over all the
+ * positions are repeated until nothing changes; whatever is left unmarked is a
+ * draw.
+ *
+ * It has its own move logic over squares numbered row * 8 + column, with the
+ * strong side playing up the board, since there are only three pieces.
+ *
+ * @author Jurgen Aliaj
+ */
+public class BitbaseGenerator {
+
+    private static final int[] KING_STEPS = {-9, -8, -7, -1, 1, 7, 8, 9};
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] QUEEN_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1},
+    {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    private final int type;
+    private final long[] won = new long[Bitbase.SIZE / 64];
+    private final long[] queen; // KQK, for pawn promotions
+    private final long[] rook; // KRK, for pawn promotions
+
+    private BitbaseGenerator(int type, long[] queen, long[] rook) {
+        this.type = type;
+        this.queen = queen;
+        this.rook = rook;
+    }
+
+    /**
+     * Generates the bitbase of king and queen against king
+     *
+     * @return the bits, set where the strong side wins
+     */
+    public static long[] generateQueen() {
+        return new BitbaseGenerator(Piece.QUEEN, null, null).generate();
+    }
+
+    /**
+     * Generates the bitbase of king and rook against king
+     *
+     * @return the bits, set where the strong side wins
+     */
+    public static long[] generateRook() {
+        return new BitbaseGenerator(Piece.ROOK, null, null).generate();
+    }
+
+    /**
+     * Generates the bitbase of king and pawn against king, which looks up the
+     * queen and rook endings for promotions
+     *
+     * @param queen the bitbase of king and queen against king
+     * @param rook the bitbase of king and rook against king
+     * @return the bits, set where the strong side wins
+     */
+    public static long[] generatePawn(long[] queen, long[] rook) {
+        return new BitbaseGenerator(Piece.PAWN, queen, rook).generate();
+    }
+
+    private long[] generate() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int stm = 0; stm < 2; stm++) {
+                for (int strong = 0; strong < 64; strong++) {
+                    for (int weak = 0; weak < 64; weak++) {
+                        for (int piece = 0; piece < 64; piece++) {
+                            int index = Bitbase.index(stm, strong, weak, piece);
+                            if (!isSet(won, index) && isLegal(stm, strong, weak, piece)
+                                    && (stm == Bitbase.STRONG ? strongWins(strong, weak, piece)
+                                    : weakLoses(strong, weak, piece))) {
+                                won[index >>> 6] |= 1L << (index & 63);
+                                changed = true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return won;
+    }
+
+    /**
+     * Whether the position can occur: three different squares, kings apart,
+     * no pawn on the first or last row and the side that just moved not in
+     * check
+     */
+    private boolean isLegal(int stm, int strong, int weak, int piece) {
+        if (strong == weak || strong == piece || weak == piece || isAdjacent(strong, weak)) {
+            return false;
+        }
+        if (type == Piece.PAWN && (piece < 8 || piece >= 56)) {
+            return false;
+        }
+        return stm == Bitbase.WEAK || !attacks(piece, weak, strong);
+    }
+
+    /**
+     * Whether the strong side, to move, has a move to a won position
+     */
+    private boolean strongWins(int strong, int weak, int piece) {
+        for (int step : KING_STEPS) {
+            int to = strong + step;
+            if (isStep(strong, to) && to != piece && !isAdjacent(to, weak)
+                    && isSet(won, Bitbase.index(Bitbase.WEAK, to, weak, piece))) {
+                return true;
+            }
+        }
+        if (type == Piece.PAWN) {
+            int to = piece + 8;
+            if (to == strong || to == weak) {
+                return false;
+            }
+            if (to >= 56) {
+                //a new queen or rook the weak king can take is a draw, which the tables know
+                return isSet(queen, Bitbase.index(Bitbase.WEAK, strong, weak, to))
+                        || isSet(rook, Bitbase.index(Bitbase.WEAK, strong, weak, to));
+            }
+            if (isSet(won, Bitbase.index(Bitbase.WEAK, strong, weak, to))) {
+                return true;
+            }
+            int twoUp = piece + 16;
+            return piece < 16 && twoUp != strong && twoUp != weak
+                    && isSet(won, Bitbase.index(Bitbase.WEAK, strong, weak, twoUp));
+        }
+        int[][] directions = type == Piece.QUEEN ? QUEEN_DIRECTIONS : ROOK_DIRECTIONS;
+        for (int[] d : directions) {
+            int row = piece / 8 + d[0], col = piece % 8 + d[1];
+            while (row >= 0 && row < 8 && col >= 0 && col < 8) {
+                int to = row * 8 + col;
+                if (to == strong || to == weak) {
+                    break;
+                }
+                if (isSet(won, Bitbase.index(Bitbase.WEAK, strong, weak, to))) {
+                    return true;
+                }
+                row += d[0];
+                col += d[1];
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the weak side, to move, is mated or can only move to won
+     * positions. Taking the piece is always a draw.
+     */
+    private boolean weakLoses(int strong, int weak, int piece) {
+        boolean canMove = false;
+        for (int step : KING_STEPS) {
+            int to = weak + step;
+            if (!isStep(weak, to) || isAdjacent(to, strong) || attacks(piece, to, strong)) {
+                continue;
+            }
+            if (to == piece || !isSet(won, Bitbase.index(Bitbase.STRONG, strong, to, piece))) {
+                return false;
+            }
+            canMove = true;
+        }
+        return canMove || attacks(piece, weak, strong);
+    }
+
+    /**
+     * Whether the strong piece attacks a square
+     *
+     * @param piece the square of the piece
+     * @param target the square attacked
+     * @param blocker the strong king, the only piece that can block a line
+     * (the weak king never shields the square behind it)
+     */
+    private boolean attacks(int piece, int target, int blocker) {
+        if (piece == target) {
+            return false;
+        }
+        int dRow = target / 8 - piece / 8, dCol = target % 8 - piece % 8;
+        if (type == Piece.PAWN) {
+            return dRow == 1 && Math.abs(dCol) == 1;
+        }
+        boolean straight = dRow == 0 || dCol == 0;
+        boolean diagonal = Math.abs(dRow) == Math.abs(dCol);
+        if (!straight && !(diagonal && type == Piece.QUEEN)) {
+            return false;
+        }
+        int stepRow = Integer.signum(dRow), stepCol = Integer.signum(dCol);
+        int row = piece / 8 + stepRow, col = piece % 8 + stepCol;
+        while (row * 8 + col != target) {
+            if (row * 8 + col == blocker) {
+                return false;
+            }
+            row += stepRow;
+            col += stepCol;
+        }
+        return true;
+    }
+
+    private static boolean isStep(int from, int to) {
+        return to >= 0 && to < 64 && Math.abs(to % 8 - from % 8) <= 1;
+    }
+
+    private static boolean isAdjacent(int a, int b) {
+        return Math.abs(a / 8 - b / 8) <= 1 && Math.abs(a % 8 - b % 8) <= 1;
+    }
+
+    static boolean isSet(long[] bits, int index) {
+        return (bits[index >>> 6] >>> (index & 63) & 1) != 0;
+    }
+
+    /**
+     * Generates the bitbases and writes them to a directory, ex
+     * {@code java chess.endgame.BitbaseGenerator src/chess/endgame}
+     *
+     * @param args the directory
+     */
+    public static void main(String[] args) {
+        File dir = new File(args.length > 0 ? args[0] : ".");
+        long[] queen = generateQueen();
+        long[] rook = generateRook();
+        long[] pawn = generatePawn(queen, rook);
+        try {
+            write(new File(dir, "kqk.bin"), queen);
+            write(new File(dir, "krk.bin"), rook);
+            write(new File(dir, "kpk.bin"), pawn);
+        } catch (IOException ex) {
+            System.err.println(ex);
+        }
+    }
+
+    private static void write(File f, long[] bits) throws IOException {
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)))) {
+            for (int i = 0; i < bits.length; i++) {
+                dos.writeLong(bits[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package chess.engine;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Keeps the results of deep searches in a memory-mapped file, so later runs
+ * and other processes on the same machine can reuse them. The file is a hash
+ * table of fixed size made of buckets of four entries, one cache line each.
+ * When a bucket is full the entry replaced is the one with the lowest depth,
+ * counting each session since it was written as a ply less.
+ *
+ * <pre>
+ * magic       int    "CHAC"
+ * version     int
+ * generation  int    counted up each time the file is opened
+ * buckets     int
+ * (padding to 64 bytes)
+ * entries     4 per bucket:
+ *   key       long   the hash of the position xor the data, so an entry
+ *                    written halfway by another process does not match
+ *   data      long   move (16 bits), score (16), depth (8), generation (8)
+ * </pre>
+ *
+ * @author Jurgen Aliaj
+ */
+public class AnalysisCache implements Closeable {
+
+    private static final int MAGIC = 0x43484143; // "CHAC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int BUCKET_SIZE = 64;
+    private static final int SLOTS = 4;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer map;
+    private final int buckets;
+    private final int generation;
+
+    /**
+     * A result read from the cache
+     */
+    public static final class Entry {
+
+        private final int move, score, depth;
+
+        Entry(long data) {
+            move = (int) (data & 0xFFFF);
+            score = (short) (data >>> 16);
+            depth = (int) (data >>> 32) & 0xFF;
+        }
+
+        /**
+         * Gets the best move found
+         *
+         * @return the move, packed as by {@code Move.encode}
+         */
+        public int getMove() {
+            return move;
+        }
+
+        /**
+         * Gets the score of the position
+         *
+         * @return the score in centipawns for the side to move
+         */
+        public int getScore() {
+            return score;
+        }
+
+        /**
+         * Gets how deep the position was searched
+         *
+         * @return the depth in half moves
+         */
+        public int getDepth() {
+            return depth;
+        }
+    }
+
+    /**
+     * Opens a cache file, creating it if it does not exist. An existing file
+     * keeps its size.
+     *
+     * @param f the file
+     * @param megabytes the size of a new file, at most 1024
+     * @throws IOException if the file cannot be opened or is not a cache
+     */
+    public AnalysisCache(File f, int megabytes) throws IOException {
+        file = new RandomAccessFile(f, "rw");
+        try {
+            if (file.length() == 0) {
+                int n = Math.max(1, Math.min(megabytes, 1024) * (1024 * 1024 / BUCKET_SIZE));
+                file.setLength(HEADER_SIZE + (long) n * BUCKET_SIZE);
+                file.writeInt(MAGIC);
+                file.writeInt(VERSION);
+                file.writeInt(0);
+                file.writeInt(n);
+            }
+            file.seek(0);
+            if (file.readInt() != MAGIC || file.readInt() != VERSION) {
+                throw new IOException("Not an analysis cache: " + f);
+            }
+            file.readInt();
+            buckets = file.readInt();
+            if (buckets <= 0 || HEADER_SIZE + (long) buckets * BUCKET_SIZE > file.length()) {
+                throw new IOException("Analysis cache is truncated: " + f);
+            }
+            map = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) buckets * BUCKET_SIZE);
+            //a new session, entries written before it start to age
+            generation = (map.getInt(8) + 1) & 0xFF;
+            map.putInt(8, generation);
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Looks up a position
+     *
+     * @param hash the hash of the position
+     * @return the result, or null if the position is not in the cache
+     */
+    public Entry probe(long hash) {
+        int bucket = bucket(hash);
+        for (int i = 0; i < SLOTS; i++) {
+            int offset = bucket + i * 16;
+            long data = map.getLong(offset + 8);
+            if ((map.getLong(offset) ^ data) == hash && data != 0) {
+                return new Entry(data);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores a result. A position already stored is only replaced by a
+     * deeper search, otherwise the least useful entry of its bucket is.
+     *
+     * @param hash the hash of the position
+     * @param move the best move, packed as by {@code Move.encode}
+     * @param score the score in centipawns for the side to move
+     * @param depth how deep the position was searched
+     */
+    public void store(long hash, int move, int score, int depth) {
+        int bucket = bucket(hash);
+        int victim = -1, worst = Integer.MAX_VALUE;
+        for (int i = 0; i < SLOTS; i++) {
+            int offset = bucket + i * 16;
+            long old = map.getLong(offset + 8);
+            if ((map.getLong(offset) ^ old) == hash && old != 0) {
+                if (((int) (old >>> 32) & 0xFF) > depth) {
+                    return;
+                }
+                victim = offset;
+                break;
+            }
+            //each session since an entry was written counts as a ply less
+            int age = (generation - (int) (old >>> 40)) & 0xFF;
+            int value = old == 0 ? Integer.MIN_VALUE : ((int) (old >>> 32) & 0xFF) - age;
+            if (value < worst) {
+                worst = value;
+                victim = offset;
+            }
+        }
+        long data = (move & 0xFFFFL) | (score & 0xFFFFL) << 16 | (long) (depth & 0xFF) << 32
+                | (long) generation << 40 | 1L << 48; // the last bit keeps a stored entry from being 0
+        map.putLong(victim + 8, data);
+        map.putLong(victim, hash ^ data);
+    }
+
+    /**
+     * Writes the cache to disk
+     */
+    public void flush() {
+        map.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        file.close();
+    }
+
+    private int bucket(long hash) {
+        return HEADER_SIZE + (int) ((hash >>> 1) % buckets) * BUCKET_SIZE;
+    }
+}
@@ -0,0 +1,102 @@
+package chess.engine;
+
+import chess.game.Game;
+import chess.game.Piece;
+
+/**
+ * Scores a position by material and by where the pieces stand, in
+ * centipawns for the side to move.
+ *
+ * @author Jurgen Aliaj
+ */
+public final class Evaluator {
+
+    /**
+     * the value of each piece type, indexed by {@code Piece.getType()}
+     */
+    public static final int[] VALUES = {0, 100, 320, 330, 500, 900, 0};
+    /**
+     * bonuses by square for white, row 0 first; black reads them upside down
+     */
+    private static final int[] PAWN_SQUARES = {
+        0, 0, 0, 0, 0, 0, 0, 0,
+        5, 10, 10, -20, -20, 10, 10, 5,
+        5, -5, -10, 0, 0, -10, -5, 5,
+        0, 0, 0, 20, 20, 0, 0, 0,
+        5, 5, 10, 25, 25, 10, 5, 5,
+        10, 10, 20, 30, 30, 20, 10, 10,
+        50, 50, 50, 50, 50, 50, 50, 50,
+        0, 0, 0, 0, 0, 0, 0, 0};
+    private static final int[] KNIGHT_SQUARES = {
+        -50, -40, -30, -30, -30, -30, -40, -50,
+        -40, -20, 0, 5, 5, 0, -20, -40,
+        -30, 5, 10, 15, 15, 10, 5, -30,
+        -30, 0, 15, 20, 20, 15, 0, -30,
+        -30, 5, 15, 20, 20, 15, 5, -30,
+        -30, 0, 10, 15, 15, 10, 0, -30,
+        -40, -20, 0, 0, 0, 0, -20, -40,
+        -50, -40, -30, -30, -30, -30, -40, -50};
+    private static final int[] BISHOP_SQUARES = {
+        -20, -10, -10, -10, -10, -10, -10, -20,
+        -10, 5, 0, 0, 0, 0, 5, -10,
+        -10, 10, 10, 10, 10, 10, 10, -10,
+        -10, 0, 10, 10, 10, 10, 0, -10,
+        -10, 5, 5, 10, 10, 5, 5, -10,
+        -10, 0, 5, 10, 10, 5, 0, -10,
+        -10, 0, 0, 0, 0, 0, 0, -10,
+        -20, -10, -10, -10, -10, -10, -10, -20};
+    private static final int[] ROOK_SQUARES = {
+        0, 0, 0, 5, 5, 0, 0, 0,
+        -5, 0, 0, 0, 0, 0, 0, -5,
+        -5, 0, 0, 0, 0, 0, 0, -5,
+        -5, 0, 0, 0, 0, 0, 0, -5,
+        -5, 0, 0, 0, 0, 0, 0, -5,
+        -5, 0, 0, 0, 0, 0, 0, -5,
+        5, 10, 10, 10, 10, 10, 10, 5,
+        0, 0, 0, 0, 0, 0, 0, 0};
+    private static final int[] QUEEN_SQUARES = {
+        -20, -10, -10, -5, -5, -10, -10, -20,
+        -10, 0, 5, 0, 0, 0, 0, -10,
+        -10, 5, 5, 5, 5, 5, 0, -10,
+        0, 0, 5, 5, 5, 5, 0, -5,
+        -5, 0, 5, 5, 5, 5, 0, -5,
+        -10, 0, 5, 5, 5, 5, 0, -10,
+        -10, 0, 0, 0, 0, 0, 0, -10,
+        -20, -10, -10, -5, -5, -10, -10, -20};
+    private static final int[] KING_SQUARES = {
+        20, 30, 10, 0, 0, 10, 30, 20,
+        20, 20, 0, 0, 0, 0, 20, 20,
+        -10, -20, -20, -20, -20, -20, -20, -10,
+        -20, -30, -30, -40, -40, -30, -30, -20,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30};
+    private static final int[][] SQUARES = {null, PAWN_SQUARES, KNIGHT_SQUARES, BISHOP_SQUARES,
+        ROOK_SQUARES, QUEEN_SQUARES, KING_SQUARES};
+
+    private Evaluator() {
+    }
+
+    /**
+     * Scores the current position of a game
+     *
+     * @param game the game
+     * @return the score in centipawns, positive if the side to move is ahead
+     */
+    public static int evaluate(Game game) {
+        int score = 0;
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                Piece p = game.board[row][col].getPiece();
+                if (p != null) {
+                    int type = p.getType();
+                    int square = (p.getColor() == Game.WHITE ? row : 7 - row) * 8 + col;
+                    int value = VALUES[type] + SQUARES[type][square];
+                    score += p.getColor() == Game.WHITE ? value : -value;
+                }
+            }
+        }
+        return game.getCurrentTurn() == Game.WHITE ? score : -score;
+    }
+}
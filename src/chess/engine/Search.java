@@ -0,0 +1,471 @@
+package chess.engine;
+
+import chess.db.OpeningBook;
+import chess.endgame.Bitbase;
+import chess.game.Game;
+import chess.game.Move;
+import chess.game.Piece;
+import chess.metrics.FlightEvents;
+import chess.metrics.Metrics;
+
+/**
+ * Finds the best move in a position by iterative deepening alpha-beta search
+ * with a quiescence search of captures at the leaves. Before searching it
+ * looks in the opening book and the analysis cache, and endings with three
+ * pieces are scored from the bitbases.
+ *
+ * Children are made by copying the game, since moves cannot be taken back.
+ * A search runs on the thread that calls {@code search} and can be stopped
+ * from any other.
+ *
+ * @author Jurgen Aliaj
+ */
+public class Search {
+
+    /**
+     * the score of being mated now, mate in n plies scores MATE - n
+     */
+    public static final int MATE = 30000;
+    /**
+     * the score of a won ending known from the bitbases
+     */
+    public static final int KNOWN_WIN = 20000;
+    public static final int MAX_DEPTH = 64;
+    /**
+     * analyses at least this deep are kept in the analysis cache
+     */
+    private static final int CACHE_DEPTH = 4;
+    private final TranspositionTable table;
+    private AnalysisCache cache;
+    private OpeningBook book;
+    private volatile boolean stopped;
+    private long deadline;
+    private long nodes, nextClockCheck;
+    //counted here and added to the shared metrics after each depth
+    private long probes, hits, cutoffs;
+    //the nodes as of the last depth, which other threads may read
+    private volatile long reportedNodes;
+    private final int[][] pv = new int[MAX_DEPTH + 1][MAX_DEPTH + 1];
+    private final int[] pvLength = new int[MAX_DEPTH + 1];
+    //the game each ply copies its moves into, made on first use
+    private final Game[] children = new Game[MAX_DEPTH + 1];
+
+    /**
+     * Told about each depth completed
+     */
+    public interface Listener {
+
+        /**
+         * Called after each iteration
+         *
+         * @param result the best line found so far
+         */
+        void searched(Result result);
+    }
+
+    /**
+     * The outcome of a search
+     */
+    public static final class Result {
+
+        private final int move, score, depth;
+        private final int[] pv;
+        private final long nodes, millis;
+
+        Result(int move, int score, int depth, int[] pv, long nodes, long millis) {
+            this.move = move;
+            this.score = score;
+            this.depth = depth;
+            this.pv = pv;
+            this.nodes = nodes;
+            this.millis = millis;
+        }
+
+        /**
+         * Gets the best move
+         *
+         * @return the move, packed as by {@code Move.encode}, or
+         * {@code Move.NONE} if there is no legal move
+         */
+        public int getMove() {
+            return move;
+        }
+
+        /**
+         * Gets the score
+         *
+         * @return the score in centipawns for the side to move
+         */
+        public int getScore() {
+            return score;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Gets the principal variation, the moves both sides are expected to
+         * play
+         *
+         * @return the moves, the best move first
+         */
+        public int[] getPv() {
+            return pv.clone();
+        }
+
+        public long getNodes() {
+            return nodes;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+    }
+
+    /**
+     * Creates a search
+     *
+     * @param table the transposition table, which may be shared with other
+     * searches
+     */
+    public Search(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Sets the cache that deep results are read from and written to
+     *
+     * @param cache the cache, null for none
+     */
+    public void setCache(AnalysisCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Sets the book that is looked in before searching
+     *
+     * @param book the book, null for none
+     */
+    public void setBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    /**
+     * Stops the search, which returns the best move of the last depth
+     * completed. A search that has been stopped stays stopped, even if it is
+     * stopped before it starts.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Searches the current position of a game, which is not changed
+     *
+     * @param game the game
+     * @param maxDepth the depth to stop at
+     * @param millis the time to stop after, 0 for no limit
+     * @param listener told about each depth completed, may be null
+     * @return the best move found
+     */
+    public Result search(Game game, int maxDepth, long millis, Listener listener) {
+        long start = System.currentTimeMillis();
+        deadline = millis > 0 ? start + millis : Long.MAX_VALUE;
+        nodes = 0;
+        reportedNodes = 0;
+        nextClockCheck = 0;
+        maxDepth = Math.max(1, Math.min(maxDepth, MAX_DEPTH));
+        int[] moves = game.legalMoves();
+        if (moves.length == 0) {
+            return new Result(Move.NONE, game.isInCheck() ? -MATE : 0, 0, new int[0], 0, 0);
+        }
+        if (book != null) {
+            int move = book.probe(game);
+            if (move != Move.NONE) {
+                return new Result(move, 0, 0, new int[]{move}, 0, 0);
+            }
+        }
+        Result best = null;
+        if (cache != null) {
+            AnalysisCache.Entry entry = cache.probe(game.getHash());
+            if (entry != null && contains(moves, entry.getMove())) {
+                best = new Result(entry.getMove(), entry.getScore(), entry.getDepth(),
+                        new int[]{entry.getMove()}, 0, 0);
+                if (entry.getDepth() >= maxDepth) {
+                    return best; // analysed deep enough already
+                }
+            }
+        }
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            Object event = FlightEvents.start(FlightEvents.Type.SEARCH_ITERATION);
+            long before = nodes;
+            int score = search(game, depth, 0, -MATE - 1, MATE + 1);
+            FlightEvents.searchIteration(event, game.getHash(), depth, nodes - before);
+            report();
+            if (stopped) {
+                break;
+            }
+            int[] line = new int[pvLength[0]];
+            System.arraycopy(pv[0], 0, line, 0, line.length);
+            Result result = new Result(line[0], score, depth, line, nodes, System.currentTimeMillis() - start);
+            if (best == null || depth >= best.getDepth() || line[0] == best.getMove()) {
+                best = result;
+            }
+            if (cache != null && depth >= CACHE_DEPTH) {
+                store(game, line, score, depth);
+            }
+            if (listener != null) {
+                listener.searched(result);
+            }
+            if (Math.abs(score) >= MATE - MAX_DEPTH) {
+                break; // a forced mate, searching deeper will not change it
+            }
+        }
+        if (best == null) {
+            //stopped before the first depth finished
+            best = new Result(moves[0], 0, 0, new int[]{moves[0]}, nodes, System.currentTimeMillis() - start);
+        }
+        return best;
+    }
+
+    /**
+     * Adds what has been counted since the last report to the shared metrics
+     */
+    private void report() {
+        Metrics.NODES.add(nodes - reportedNodes);
+        Metrics.TRANSPOSITION_PROBES.add(probes);
+        Metrics.TRANSPOSITION_HITS.add(hits);
+        Metrics.CUTOFFS.add(cutoffs);
+        reportedNodes = nodes;
+        probes = 0;
+        hits = 0;
+        cutoffs = 0;
+    }
+
+    /**
+     * Gets the number of positions searched by the last search, as of the
+     * last depth completed while it is running. It can be called from any
+     * thread.
+     *
+     * @return the number of nodes
+     */
+    public long getNodes() {
+        return reportedNodes;
+    }
+
+    /**
+     * Stores the positions along the principal variation in the cache, each
+     * searched a ply less deep than the one before it
+     */
+    private void store(Game game, int[] line, int score, int depth) {
+        Game g = game.copy();
+        for (int i = 0; i < line.length && depth - i >= CACHE_DEPTH; i++) {
+            int s = toTable(score, i);
+            cache.store(g.getHash(), line[i], i % 2 == 0 ? s : -s, depth - i);
+            play(g, line[i]);
+        }
+    }
+
+    private int search(Game game, int depth, int ply, int alpha, int beta) {
+        pvLength[ply] = 0;
+        if (ply > 0) {
+            if (game.repetitions() > 0 || game.getHalfmoveClock() >= 100) {
+                return 0;
+            }
+            int known = probeBitbase(game, ply);
+            if (known != Integer.MIN_VALUE) {
+                return known;
+            }
+        }
+        if (depth <= 0 || ply >= MAX_DEPTH) {
+            return quiesce(game, ply, alpha, beta);
+        }
+        //nodes are slow enough that the clock can be read often, quiescence
+        //counts nodes too so a multiple of 128 may be skipped
+        if (++nodes >= nextClockCheck) {
+            nextClockCheck = nodes + 128;
+            if (System.currentTimeMillis() > deadline) {
+                stopped = true;
+            }
+        }
+        if (stopped) {
+            return 0;
+        }
+        long entry = table.probe(game.getHash());
+        int hashMove = Move.NONE;
+        probes++;
+        if (entry != 0) {
+            hits++;
+            hashMove = TranspositionTable.getMove(entry);
+            int score = fromTable(TranspositionTable.getScore(entry), ply);
+            int bound = TranspositionTable.getBound(entry);
+            if (ply > 0 && TranspositionTable.getDepth(entry) >= depth
+                    && (bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER && score >= beta)
+                    || (bound == TranspositionTable.UPPER && score <= alpha))) {
+                return score;
+            }
+        }
+        int[] moves = game.legalMoves();
+        if (moves.length == 0) {
+            return game.isInCheck() ? -MATE + ply : 0;
+        }
+        order(game, moves, hashMove);
+        int bestMove = Move.NONE;
+        int bound = TranspositionTable.UPPER;
+        for (int i = 0; i < moves.length; i++) {
+            Game child = child(game, ply + 1);
+            play(child, moves[i]);
+            //a check is not searched less deep, so mates near the horizon are seen
+            int score = -search(child, child.isInCheck() ? depth : depth - 1, ply + 1, -beta, -alpha);
+            if (stopped) {
+                return 0;
+            }
+            if (score > alpha) {
+                alpha = score;
+                bestMove = moves[i];
+                bound = TranspositionTable.EXACT;
+                pv[ply][0] = moves[i];
+                System.arraycopy(pv[ply + 1], 0, pv[ply], 1, pvLength[ply + 1]);
+                pvLength[ply] = pvLength[ply + 1] + 1;
+                if (alpha >= beta) {
+                    bound = TranspositionTable.LOWER;
+                    cutoffs++;
+                    break;
+                }
+            }
+        }
+        table.store(game.getHash(), bestMove, toTable(alpha, ply), depth, bound);
+        return alpha;
+    }
+
+    /**
+     * Searches captures only, until the position is quiet
+     */
+    private int quiesce(Game game, int ply, int alpha, int beta) {
+        pvLength[ply] = 0;
+        nodes++;
+        int standPat = Evaluator.evaluate(game);
+        if (standPat >= beta || ply >= MAX_DEPTH) {
+            return standPat;
+        }
+        alpha = Math.max(alpha, standPat);
+        int[] moves = game.legalMoves();
+        if (moves.length == 0) {
+            return game.isInCheck() ? -MATE + ply : 0;
+        }
+        order(game, moves, Move.NONE);
+        for (int i = 0; i < moves.length && isCapture(game, moves[i]); i++) {
+            Game child = child(game, ply + 1);
+            play(child, moves[i]);
+            int score = -quiesce(child, ply + 1, -beta, -alpha);
+            if (score > alpha) {
+                alpha = score;
+                if (alpha >= beta) {
+                    cutoffs++;
+                    break;
+                }
+            }
+        }
+        return alpha;
+    }
+
+    /**
+     * Scores an ending known from the bitbases, Integer.MIN_VALUE if it is
+     * not one. Wins are scored lower the further away they are and get a
+     * bonus for material, so the search still makes progress towards them.
+     */
+    private int probeBitbase(Game game, int ply) {
+        switch (Bitbase.probe(game)) {
+            case Bitbase.DRAW:
+                return 0;
+            case Bitbase.WIN:
+                return KNOWN_WIN - ply + Evaluator.evaluate(game) / 10;
+            case Bitbase.LOSS:
+                return -KNOWN_WIN + ply + Evaluator.evaluate(game) / 10;
+            default:
+                return Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Puts the hash move first, then captures, most valuable victim first
+     */
+    private static void order(Game game, int[] moves, int hashMove) {
+        int[] keys = new int[moves.length];
+        for (int i = 0; i < moves.length; i++) {
+            if (moves[i] == hashMove) {
+                keys[i] = 100000;
+            } else if (isCapture(game, moves[i])) {
+                Piece victim = game.board[Move.getToRow(moves[i])][Move.getToCol(moves[i])].getPiece();
+                Piece attacker = game.board[Move.getFromRow(moves[i])][Move.getFromCol(moves[i])].getPiece();
+                keys[i] = 10000 + (victim == null ? 100 : Evaluator.VALUES[victim.getType()]) * 10
+                        - attacker.getType();
+            } else if (Move.getPromotion(moves[i]) != Move.NONE) {
+                keys[i] = 5000 + Move.getPromotion(moves[i]);
+            }
+        }
+        for (int i = 1; i < moves.length; i++) {
+            for (int j = i; j > 0 && keys[j - 1] < keys[j]; j--) {
+                int t = keys[j];
+                keys[j] = keys[j - 1];
+                keys[j - 1] = t;
+                t = moves[j];
+                moves[j] = moves[j - 1];
+                moves[j - 1] = t;
+            }
+        }
+    }
+
+    /**
+     * Whether a move takes a piece, en passant included
+     */
+    private static boolean isCapture(Game game, int move) {
+        if (game.board[Move.getToRow(move)][Move.getToCol(move)].isOccupied()) {
+            return true;
+        }
+        Piece p = game.board[Move.getFromRow(move)][Move.getFromCol(move)].getPiece();
+        return p.getType() == Piece.PAWN && Move.getFromCol(move) != Move.getToCol(move);
+    }
+
+    /**
+     * Gets the game kept for a ply, as a copy of its parent
+     */
+    private Game child(Game game, int ply) {
+        if (children[ply] == null) {
+            children[ply] = game.copy();
+        } else {
+            children[ply].copyFrom(game);
+        }
+        return children[ply];
+    }
+
+    /**
+     * Plays a move known to be legal
+     */
+    static void play(Game game, int move) {
+        game.nextTurn(game.board[Move.getFromRow(move)][Move.getFromCol(move)].getPiece(),
+                game.board[Move.getToRow(move)][Move.getToCol(move)], Move.getPromotion(move));
+    }
+
+    private static boolean contains(int[] moves, int move) {
+        for (int i = 0; i < moves.length; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Mate scores are stored as distances from the position, not the root
+     */
+    private static int toTable(int score, int ply) {
+        return score >= MATE - MAX_DEPTH ? score + ply : score <= -MATE + MAX_DEPTH ? score - ply : score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        return score >= MATE - MAX_DEPTH ? score - ply : score <= -MATE + MAX_DEPTH ? score + ply : score;
+    }
+}
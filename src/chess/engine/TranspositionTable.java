@@ -0,0 +1,98 @@
+package chess.engine;
+
+/**
+ * Remembers the results of searched positions, shared by every search thread.
+ * Each entry is a key and a data word; the key is stored xor the data, so an
+ * entry torn by two threads writing at once no longer matches its hash and
+ * is ignored instead of needing a lock.
+ *
+ * @author Jurgen Aliaj
+ */
+public class TranspositionTable {
+
+    /**
+     * bounds stored with a score
+     */
+    public static final int EXACT = 0;
+    public static final int LOWER = 1;
+    public static final int UPPER = 2;
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+
+    /**
+     * Creates a table
+     *
+     * @param megabytes the memory to use, rounded down to a power of two
+     * entries
+     */
+    public TranspositionTable(int megabytes) {
+        long entries = Math.max(1024, (long) megabytes * 1024 * 1024 / 16);
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Looks up a position
+     *
+     * @param hash the hash of the position
+     * @return the packed entry (read with the static getters), or 0 if the
+     * position is not stored
+     */
+    public long probe(long hash) {
+        int i = (int) hash & mask;
+        long d = data[i];
+        return (keys[i] ^ d) == hash ? d : 0;
+    }
+
+    /**
+     * Stores a position, replacing what was in its slot unless that was
+     * the same position searched deeper
+     *
+     * @param hash the hash of the position
+     * @param move the best move found, packed as by {@code Move.encode}
+     * @param score the score
+     * @param depth the depth searched
+     * @param bound whether the score is {@code EXACT}, a {@code LOWER} or an
+     * {@code UPPER} bound
+     */
+    public void store(long hash, int move, int score, int depth, int bound) {
+        int i = (int) hash & mask;
+        long old = data[i];
+        if ((keys[i] ^ old) == hash && getDepth(old) > depth && bound != EXACT) {
+            return;
+        }
+        long d = (move & 0xFFFFL) | (score & 0xFFFFL) << 16 | (long) (depth & 0xFF) << 32
+                | (long) bound << 40 | 1L << 42; // the last bit keeps a stored entry from being 0
+        data[i] = d;
+        keys[i] = hash ^ d;
+    }
+
+    /**
+     * Empties the table
+     */
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 0;
+            data[i] = 0;
+        }
+    }
+
+    public static int getMove(long entry) {
+        return (int) (entry & 0xFFFF);
+    }
+
+    public static int getScore(long entry) {
+        return (short) (entry >>> 16);
+    }
+
+    public static int getDepth(long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    public static int getBound(long entry) {
+        return (int) (entry >>> 40) & 3;
+    }
+}
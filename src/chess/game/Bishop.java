@@ -7,6 +7,8 @@ package chess.game;
  */
 public class Bishop extends Piece {
 
+    private static final long serialVersionUID = -1985393731092789322L;
+
     /**
      *
      * @param pos
@@ -17,6 +19,11 @@ public class Bishop extends Piece {
         super(pos, color, game);
     }
 
+    @Override
+    public int getType() {
+        return BISHOP;
+    }
+
     @Override
     /**
      * Checks that the move does not violate general rules
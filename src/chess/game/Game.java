@@ -1,8 +1,11 @@
 package chess.game;
 
+import chess.metrics.FlightEvents;
+import chess.metrics.Metrics;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.*;
-import javax.swing.JOptionPane;
 
 /**
  * This initializes the board and controls the flow of the game by switching
@@ -12,8 +15,16 @@ import javax.swing.JOptionPane;
  */
 public class Game implements Serializable {
 
+    private static final long serialVersionUID = -40108695571039592L;
     public static final int BLACK = 1;
     public static final int WHITE = 0;
+    /**
+     * castling rights, as returned by {@code getCastlingRights()}
+     */
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
     protected List<Piece> pieces;
     public List<Piece> removed;
     /**
@@ -21,13 +32,63 @@ public class Game implements Serializable {
      */
     public Position[][] board;
     private int currentTurn;
+    /**
+     * whether the side to move is in check, updated by {@code nextTurn}
+     */
+    private boolean check;
+    /**
+     * the status of the current position, null until {@code status()} is
+     * called after a move
+     */
+    private transient GameStatus status;
+    /**
+     * the legal moves of the current position, null until
+     * {@code legalMoves()} is called after a move
+     */
+    private transient int[] legal;
+    /**
+     * the hash of the current position, kept up to date by {@code nextTurn}
+     */
+    private long hash;
+    /**
+     * the hash of every position reached, hashHistory[ply] is the current one
+     */
+    private long[] hashHistory;
+    private int ply;
+    /**
+     * the hashes of the positions before the starting position since the last
+     * capture or pawn move, oldest first, for games set up from a snapshot
+     */
+    private long[] priorHashes;
+    /**
+     * the moves played, moveHistory[i] leads from hashHistory[i] to
+     * hashHistory[i + 1]
+     */
+    private int[] moveHistory;
+    /**
+     * the number of moves since the last capture or pawn move
+     */
+    private int halfmoveClock;
+    /**
+     * the number of half moves played before the starting position
+     */
+    private int startPly;
+    /**
+     * the starting position as written by {@code GameWriter}, null for the
+     * normal starting position
+     */
+    private byte[] start;
+    /**
+     * notified after every move, not copied or saved with the game
+     */
+    private transient List<MoveListener> listeners;
 
     /**
      * Creates a new instance of the Game class
      */
     public Game() {
         //initializes the variabels
-        pieces = new LinkedList<>();
+        pieces = new ArrayList<>(32);
         removed = new LinkedList<>();
         board = new Position[8][8];
         //loops through the board setting default values
@@ -63,6 +124,344 @@ public class Game implements Serializable {
             }
         }
         currentTurn = Game.WHITE; // white starts
+        startHistory();
+    }
+
+    /**
+     * Creates a game starting from any position. Castling rights and the en
+     * passant column are turned into the move counts the pieces use: a king or
+     * rook that can still castle and a pawn on its starting row have not
+     * moved, a pawn that can be taken en passant has moved once.
+     *
+     * @param squares the piece on each square (row * 8 + column), 0 if empty,
+     * otherwise color * 8 + type
+     * @param turn whose turn it is
+     * @param castling the castling rights
+     * @param epCol the column a pawn can be taken en passant on, -1 if none
+     * @param halfmoveClock the number of moves since a capture or pawn move
+     * @param startPly the number of half moves played before this position
+     * @param captured the pieces already captured, color * 8 + type each
+     * @param priorHashes the hashes of the positions before this one since the
+     * last capture or pawn move, oldest first
+     */
+    Game(int[] squares, int turn, int castling, int epCol, int halfmoveClock, int startPly, int[] captured,
+            long[] priorHashes) {
+        pieces = new ArrayList<>(32);
+        removed = new LinkedList<>();
+        board = new Position[8][8];
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                board[i][j] = new Position(i, j);
+            }
+        }
+        for (int i = 0; i < 64; i++) {
+            if (squares[i] != 0) {
+                Position pos = board[i / 8][i % 8];
+                Piece p = Piece.create(squares[i] & 7, pos, squares[i] >> 3, this);
+                p.nMoves = 1;
+                pos.setPiece(p);
+                pieces.add(p);
+            }
+        }
+        for (int color = 0; color < 2; color++) {
+            int row = color * 7;
+            int rights = castling >> (color * 2);
+            if ((rights & 3) != 0 && board[row][4].getPiece() instanceof King) {
+                board[row][4].getPiece().nMoves = 0;
+            }
+            if ((rights & WHITE_KINGSIDE) != 0 && board[row][7].getPiece() instanceof Rook) {
+                board[row][7].getPiece().nMoves = 0;
+            }
+            if ((rights & WHITE_QUEENSIDE) != 0 && board[row][0].getPiece() instanceof Rook) {
+                board[row][0].getPiece().nMoves = 0;
+            }
+            for (int col = 0; col < 8; col++) {
+                Piece p = board[color == WHITE ? 1 : 6][col].getPiece();
+                if (p instanceof Pawn && p.getColor() == color) {
+                    p.nMoves = 0;
+                }
+            }
+        }
+        if (epCol != -1) {
+            Piece p = board[turn == WHITE ? 4 : 3][epCol].getPiece();
+            if (p instanceof Pawn && p.getColor() != turn) {
+                ((Pawn) p).enPassantOpportunity = true;
+            }
+        }
+        for (int i = 0; i < captured.length; i++) {
+            removed.add(Piece.create(captured[i] & 7, new Position(0, 0), captured[i] >> 3, this));
+        }
+        currentTurn = turn;
+        startHistory();
+        this.halfmoveClock = halfmoveClock;
+        this.startPly = startPly;
+        this.priorHashes = priorHashes;
+        Position king = getKingPosition(turn);
+        check = king != null && king.getPiece().inCheck(turn);
+        start = GameWriter.packStart(this);
+    }
+
+    /**
+     * Creates an independent deep copy of another game. Every position and
+     * piece is duplicated and points back to the new game, so the copy can be
+     * played on by another thread without touching the original.
+     *
+     * @param other the game to copy
+     */
+    public Game(Game other) {
+        pieces = new ArrayList<>(32);
+        removed = new ArrayList<>(16);
+        //a row at a time, new Position[8][8] goes through a slow call into the VM
+        board = new Position[8][];
+        for (int i = 0; i < 8; i++) {
+            Position[] row = new Position[8];
+            for (int j = 0; j < 8; j++) {
+                row[j] = new Position(i, j);
+            }
+            board[i] = row;
+        }
+        copyFrom(other);
+    }
+
+    /**
+     * Makes this game a copy of another. The positions, the piece lists and
+     * the history arrays of this game are reused, and so is each of its
+     * pieces that has one of the same kind in the same place in the other
+     * game's list. A search that keeps a game for each ply and copies into it
+     * does not allocate once the games have been set up. Listeners are not
+     * copied.
+     *
+     * @param other the game to copy
+     */
+    public void copyFrom(Game other) {
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                board[i][j].setPiece(null);
+            }
+        }
+        //the pieces in play keep their order
+        copyPieces(other.pieces, pieces, true);
+        //captured pieces keep the position they were taken on, but are not placed on the board
+        copyPieces(other.removed, removed, false);
+        currentTurn = other.currentTurn;
+        check = other.check;
+        status = other.status;
+        legal = other.legal;//never changed once worked out, so it can be shared
+        hash = other.hash;
+        if (hashHistory == null || hashHistory.length <= other.ply) {
+            hashHistory = new long[Math.max(other.ply + 1, 64)];
+            moveHistory = new int[hashHistory.length];
+        }
+        System.arraycopy(other.hashHistory, 0, hashHistory, 0, other.ply + 1);
+        System.arraycopy(other.moveHistory, 0, moveHistory, 0, other.ply);
+        ply = other.ply;
+        priorHashes = other.priorHashes;
+        halfmoveClock = other.halfmoveClock;
+        startPly = other.startPly;
+        start = other.start;
+    }
+
+    /**
+     * Copies pieces of another game into a list of this game, reusing the
+     * pieces already in the list where they are of the same kind
+     *
+     * @param from the pieces to copy
+     * @param into the list of this game to copy them into
+     * @param place whether to put the copies on the board
+     */
+    private void copyPieces(List<Piece> from, List<Piece> into, boolean place) {
+        int n = from.size();
+        for (int i = 0; i < n; i++) {
+            Piece p = from.get(i);
+            Position pos = board[p.getPosition().getRow()][p.getPosition().getCol()];
+            Piece copy = i < into.size() ? into.get(i) : null;
+            if (copy != null && copy.getClass() == p.getClass()) {
+                copy.copyFrom(p, pos);
+            } else {
+                copy = p.copy(pos, this);
+                if (i < into.size()) {
+                    into.set(i, copy);
+                } else {
+                    into.add(copy);
+                }
+            }
+            if (place) {
+                pos.setPiece(copy);
+            }
+        }
+        while (into.size() > n) {
+            into.remove(into.size() - 1);
+        }
+    }
+
+    /**
+     * Creates a game from a position in Forsyth-Edwards Notation, ex
+     * {@code rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1}. The
+     * move clocks may be left out.
+     *
+     * @param fen the position
+     * @return the game
+     * @throws IllegalArgumentException if the position is not valid FEN
+     */
+    public static Game fromFen(String fen) {
+        int[] squares = new int[64];
+        int[] kings = new int[2];
+        int i = 0, n = fen.length();
+        int row = 7, col = 0;
+        //the pieces, from row 8 down to row 1
+        for (; i < n && fen.charAt(i) != ' '; i++) {
+            char c = fen.charAt(i);
+            if (c == '/') {
+                if (col != 8 || row == 0) {
+                    throw new IllegalArgumentException("Bad row in FEN: " + fen);
+                }
+                row--;
+                col = 0;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+            } else {
+                int type = "pnbrqk".indexOf(Character.toLowerCase(c)) + 1;
+                if (type == 0 || col > 7) {
+                    throw new IllegalArgumentException("Bad piece in FEN: " + fen);
+                }
+                int color = Character.isUpperCase(c) ? WHITE : BLACK;
+                if (type == Piece.KING) {
+                    kings[color]++;
+                }
+                squares[row * 8 + col++] = color * 8 + type;
+            }
+            if (col > 8) {
+                throw new IllegalArgumentException("Bad row in FEN: " + fen);
+            }
+        }
+        if (row != 0 || col != 8 || kings[WHITE] != 1 || kings[BLACK] != 1) {
+            throw new IllegalArgumentException("Bad position in FEN: " + fen);
+        }
+        //whose turn it is
+        i = skipSpaces(fen, i);
+        if (i >= n || (fen.charAt(i) != 'w' && fen.charAt(i) != 'b')) {
+            throw new IllegalArgumentException("Bad side to move in FEN: " + fen);
+        }
+        int turn = fen.charAt(i++) == 'w' ? WHITE : BLACK;
+        //castling rights
+        i = skipSpaces(fen, i);
+        int castling = 0;
+        for (; i < n && fen.charAt(i) != ' '; i++) {
+            int right = "KQkq-".indexOf(fen.charAt(i));
+            if (right == -1) {
+                throw new IllegalArgumentException("Bad castling rights in FEN: " + fen);
+            }
+            castling |= (1 << right) & 15;
+        }
+        //the square passed over by a pawn that moved up two
+        i = skipSpaces(fen, i);
+        int epCol = -1;
+        if (i < n && fen.charAt(i) != '-') {
+            if (i + 1 >= n || fen.charAt(i) < 'a' || fen.charAt(i) > 'h'
+                    || fen.charAt(i + 1) != (turn == WHITE ? '6' : '3')) {
+                throw new IllegalArgumentException("Bad en passant square in FEN: " + fen);
+            }
+            epCol = fen.charAt(i) - 'a';
+        }
+        while (i < n && fen.charAt(i) != ' ') {
+            i++;
+        }
+        //the move clocks
+        int halfmoveClock = 0, fullmove = 1;
+        i = skipSpaces(fen, i);
+        if (i < n) {
+            int end = fen.indexOf(' ', i);
+            halfmoveClock = parseClock(fen, i, end == -1 ? n : end);
+            i = skipSpaces(fen, end == -1 ? n : end);
+            if (i < n) {
+                end = fen.indexOf(' ', i);
+                fullmove = Math.max(parseClock(fen, i, end == -1 ? n : end), 1);
+            }
+        }
+        return new Game(squares, turn, castling, epCol, halfmoveClock, 2 * (fullmove - 1) + turn,
+                new int[0], new long[0]);
+    }
+
+    private static int skipSpaces(String s, int i) {
+        while (i < s.length() && s.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int parseClock(String s, int from, int to) {
+        int value = 0;
+        if (from == to || to - from > 6) {
+            throw new IllegalArgumentException("Bad move clock in FEN: " + s);
+        }
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Bad move clock in FEN: " + s);
+            }
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+
+    /**
+     * Converts the current position to Forsyth-Edwards Notation. The en
+     * passant square is only given when a pawn can actually be taken.
+     *
+     * @return the position in FEN
+     */
+    public String toFen() {
+        StringBuilder sb = new StringBuilder(90);
+        for (int row = 7; row >= 0; row--) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                Piece p = board[row][col].getPiece();
+                if (p == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    sb.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                char c = " pnbrqk".charAt(p.getType());
+                sb.append(p.getColor() == WHITE ? Character.toUpperCase(c) : c);
+            }
+            if (empty > 0) {
+                sb.append((char) ('0' + empty));
+            }
+            if (row > 0) {
+                sb.append('/');
+            }
+        }
+        sb.append(currentTurn == WHITE ? " w " : " b ");
+        int rights = getCastlingRights();
+        if (rights == 0) {
+            sb.append('-');
+        }
+        for (int i = 0; i < 4; i++) {
+            if ((rights & (1 << i)) != 0) {
+                sb.append("KQkq".charAt(i));
+            }
+        }
+        int epCol = getEnPassantCol();
+        if (epCol == -1) {
+            sb.append(" -");
+        } else {
+            sb.append(' ').append((char) ('a' + epCol)).append(currentTurn == WHITE ? '6' : '3');
+        }
+        sb.append(' ').append(halfmoveClock).append(' ').append((startPly + ply) / 2 + 1);
+        return sb.toString();
+    }
+
+    /**
+     * Creates an independent deep copy of this game
+     *
+     * @return the copy
+     * @see #Game(Game)
+     */
+    public Game copy() {
+        return new Game(this);
     }
 
     /**
@@ -75,14 +474,445 @@ public class Game implements Serializable {
         return this.currentTurn;
     }
 
+    /**
+     * Whether the side to move is in check. This is worked out once per move
+     * by {@code nextTurn}, so it is free to call.
+     *
+     * @return whether the side to move is in check
+     */
+    public boolean isInCheck() {
+        return check;
+    }
+
+    /**
+     * Gets the status of the game for the side to move. Check, whether any
+     * legal move exists and the draw conditions are worked out together and
+     * the result is kept until the next move.
+     *
+     * @return the status of the game
+     */
+    public GameStatus status() {
+        if (status == null) {
+            Object event = FlightEvents.start(FlightEvents.Type.STATUS);
+            if (!hasLegalMove()) {
+                status = check ? GameStatus.CHECKMATE : GameStatus.STALEMATE;
+            } else if (hasInsufficientMaterial()) {
+                status = GameStatus.INSUFFICIENT_MATERIAL;
+            } else if (isThreefoldRepetition()) {
+                status = GameStatus.THREEFOLD_REPETITION;
+            } else if (halfmoveClock >= 100) {
+                status = GameStatus.FIFTY_MOVE_RULE;
+            } else {
+                status = check ? GameStatus.CHECK : GameStatus.IN_PROGRESS;
+            }
+            FlightEvents.status(event, hash, status.name());
+        }
+        return status;
+    }
+
+    /**
+     * Whether the side to move has at least one legal move, stopping at the
+     * first one found. The cheap geometric test is done before the one that
+     * plays the move out to look for check.
+     *
+     * @return whether the side to move can move
+     */
+    private boolean hasLegalMove() {
+        if (legal != null) {
+            return legal.length > 0;
+        }
+        //isValidMove takes pieces off the list while it tries captures, so work from a copy
+        Piece[] own = new Piece[16];
+        int n = 0;
+        for (int i = 0; i < pieces.size(); i++) {
+            if (pieces.get(i).getColor() == currentTurn && n < own.length) {
+                own[n++] = pieces.get(i);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            for (int row = 0; row < 8; row++) {
+                for (int col = 0; col < 8; col++) {
+                    if (own[i].isValidCapture(board[row][col]) && own[i].isValidMove(board[row][col])) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets every legal move of the side to move. A pawn reaching the other
+     * side gives four moves, the queen promotion first. The list is worked
+     * out once per position and kept until the next move.
+     *
+     * @return a copy of the moves, packed as by {@code Move.encode}
+     */
+    public int[] legalMoves() {
+        if (legal == null) {
+            legal = generateLegalMoves();
+        }
+        return legal.clone();
+    }
+
+    private int[] generateLegalMoves() {
+        Metrics.LEGAL_MOVE_GENERATIONS.increment();
+        //isValidMove takes pieces off the list while it tries captures, so work from a copy
+        Piece[] own = new Piece[16];
+        int n = 0;
+        for (int i = 0; i < pieces.size(); i++) {
+            if (pieces.get(i).getColor() == currentTurn && n < own.length) {
+                own[n++] = pieces.get(i);
+            }
+        }
+        int[] moves = new int[256]; // no position has more than 218
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            Position from = own[i].getPosition();
+            for (int row = 0; row < 8; row++) {
+                for (int col = 0; col < 8; col++) {
+                    if (!own[i].isValidCapture(board[row][col]) || !own[i].isValidMove(board[row][col])) {
+                        continue;
+                    }
+                    if (own[i] instanceof Pawn && (row == 0 || row == 7)) {
+                        for (int promotion = Piece.QUEEN; promotion >= Piece.KNIGHT; promotion--) {
+                            moves[count++] = Move.encode(from.getRow(), from.getCol(), row, col, promotion);
+                        }
+                    } else {
+                        moves[count++] = Move.encode(from.getRow(), from.getCol(), row, col, Move.NONE);
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(moves, count);
+    }
+
+    /**
+     * Whether neither side can checkmate: only the kings are left, or the
+     * kings and a single knight or bishop
+     *
+     * @return whether there is insufficient material
+     */
+    private boolean hasInsufficientMaterial() {
+        if (pieces.size() > 3) {
+            return false;
+        }
+        for (int i = 0; i < pieces.size(); i++) {
+            int type = pieces.get(i).getType();
+            if (type != Piece.KING && type != Piece.KNIGHT && type != Piece.BISHOP) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the hash of the current position. Positions with the same pieces on
+     * the same squares, side to move, castling rights and en passant file have
+     * the same hash.
+     *
+     * @return the hash of the current position
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Gets the hash of a position reached in the game
+     *
+     * @param ply the number of half moves played to reach it, from 0 for the
+     * starting position to {@code getPly()} for the current one
+     * @return the hash of that position
+     */
+    public long getHash(int ply) {
+        if (ply < 0 || ply > this.ply) {
+            throw new IndexOutOfBoundsException("ply " + ply + " of " + this.ply);
+        }
+        return hashHistory[ply];
+    }
+
+    /**
+     * Gets the number of moves played in the game
+     *
+     * @return the number of half moves played
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * Adds a listener to be notified after every move
+     *
+     * @param listener the listener
+     */
+    public void addMoveListener(MoveListener listener) {
+        if (listeners == null) {
+            listeners = new ArrayList<>(2);
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with {@code addMoveListener}
+     *
+     * @param listener the listener
+     */
+    public void removeMoveListener(MoveListener listener) {
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Gets a move played in the game
+     *
+     * @param index the number of the move, from 0 to {@code getPly() - 1}
+     * @return the move, packed as by {@code Move.encode}
+     */
+    public int getMove(int index) {
+        if (index < 0 || index >= ply) {
+            throw new IndexOutOfBoundsException("No move " + index);
+        }
+        return moveHistory[index];
+    }
+
+    /**
+     * Gets the number of half moves played before the starting position, 0
+     * unless the game was set up from another position
+     *
+     * @return the number of half moves before the start
+     */
+    public int getStartPly() {
+        return startPly;
+    }
+
+    /**
+     * Creates a new game at the position this game started from
+     *
+     * @return the starting position
+     */
+    public Game getStartingPosition() {
+        return start == null ? new Game() : GameReader.unpackStart(start);
+    }
+
+    /**
+     * Gets the starting position as written by {@code GameWriter}
+     *
+     * @return the starting position, null for the normal one
+     */
+    byte[] getStart() {
+        return start;
+    }
+
+    /**
+     * Gets the number of half moves since the last capture or pawn move
+     *
+     * @return the halfmove clock
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * Counts how many times the current position has occurred before. Only
+     * positions since the last capture or pawn move are looked at (no earlier
+     * position can repeat) and only those with the same side to move, by
+     * comparing hashes.
+     *
+     * @return the number of earlier occurrences of the current position
+     */
+    public int repetitions() {
+        int count = 0;
+        int stop = Math.max(ply - halfmoveClock, -priorHashes.length);
+        for (int i = ply - 2; i >= stop; i -= 2) {
+            if ((i >= 0 ? hashHistory[i] : priorHashes[priorHashes.length + i]) == hash) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the hashes of the positions before the current one that a later
+     * position could still repeat, those since the last capture or pawn move
+     *
+     * @return the hashes, oldest first
+     */
+    long[] getRecentHashes() {
+        int first = Math.max(ply - halfmoveClock, -priorHashes.length);
+        long[] recent = new long[ply - first];
+        for (int i = first; i < ply; i++) {
+            recent[i - first] = i >= 0 ? hashHistory[i] : priorHashes[priorHashes.length + i];
+        }
+        return recent;
+    }
+
+    /**
+     * Whether the current position has now occurred three times
+     *
+     * @return whether there is a threefold repetition
+     */
+    public boolean isThreefoldRepetition() {
+        return repetitions() >= 2;
+    }
+
+    /**
+     * Gets the castling rights, a combination of {@code Game.WHITE_KINGSIDE},
+     * {@code Game.WHITE_QUEENSIDE}, {@code Game.BLACK_KINGSIDE} and
+     * {@code Game.BLACK_QUEENSIDE}. A side keeps a right while its king and
+     * that rook have not moved.
+     *
+     * @return the castling rights
+     */
+    public int getCastlingRights() {
+        int rights = 0;
+        for (int color = 0; color < 2; color++) {
+            Piece king = board[color * 7][4].getPiece();
+            if (king instanceof King && king.getColor() == color && king.nMoves == 0) {
+                if (isUnmovedRook(board[color * 7][7].getPiece(), color)) {
+                    rights |= WHITE_KINGSIDE << (color * 2);
+                }
+                if (isUnmovedRook(board[color * 7][0].getPiece(), color)) {
+                    rights |= WHITE_QUEENSIDE << (color * 2);
+                }
+            }
+        }
+        return rights;
+    }
+
+    private static boolean isUnmovedRook(Piece p, int color) {
+        return p instanceof Rook && p.getColor() == color && p.nMoves == 0;
+    }
+
+    /**
+     * Gets the column on which the side to move can take a pawn en passant,
+     * that is the column of a pawn that has just moved up two with an enemy
+     * pawn beside it.
+     *
+     * @return the column, or -1 if there is none
+     */
+    public int getEnPassantCol() {
+        for (int i = 0; i < pieces.size(); i++) {
+            Piece p = pieces.get(i);
+            if (p instanceof Pawn && p.getColor() != currentTurn && ((Pawn) p).enPassantOpportunity) {
+                int row = p.getPosition().getRow(), col = p.getPosition().getCol();
+                if ((col > 0 && isPawn(board[row][col - 1].getPiece(), currentTurn))
+                        || (col < 7 && isPawn(board[row][col + 1].getPiece(), currentTurn))) {
+                    return col;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isPawn(Piece p, int color) {
+        return p instanceof Pawn && p.getColor() == color;
+    }
+
+    /**
+     * Computes the hash of the current position from scratch
+     *
+     * @return the hash
+     */
+    private long computeHash() {
+        long h = 0;
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                if (board[i][j].isOccupied()) {
+                    h ^= key(board[i][j].getPiece(), board[i][j]);
+                }
+            }
+        }
+        return h ^ stateKey();
+    }
+
+    /**
+     * Gets the part of the hash that is not about where the pieces are
+     */
+    private long stateKey() {
+        long h = Zobrist.castling(getCastlingRights());
+        int col = getEnPassantCol();
+        if (col != -1) {
+            h ^= Zobrist.enPassant(col);
+        }
+        if (currentTurn == BLACK) {
+            h ^= Zobrist.side();
+        }
+        return h;
+    }
+
+    private static long key(Piece p, Position pos) {
+        return Zobrist.piece(p.getColor(), p.getType(), pos.getRow(), pos.getCol());
+    }
+
+    /**
+     * Starts the hash history from the current position
+     */
+    private void startHistory() {
+        hash = computeHash();
+        hashHistory = new long[64];
+        hashHistory[0] = hash;
+        moveHistory = new int[64];
+        priorHashes = new long[0];
+        ply = 0;
+        halfmoveClock = 0;
+    }
+
+    /**
+     * Gets the position of a side's king
+     *
+     * @param color the color of the king (Game.BLACK or Game.WHITE)
+     * @return the position of the king, or null if there is none
+     */
+    public Position getKingPosition(int color) {
+        for (int i = 0; i < pieces.size(); i++) {
+            Piece p = pieces.get(i);
+            if (p.getType() == Piece.KING && p.getColor() == color) {
+                return p.getPosition();
+            }
+        }
+        return null;
+    }
+
     /**
      * Moves to the next turn. {@code Piece.isValidMove()} must be called first.
+     * A pawn reaching the other side is promoted to a queen, use
+     * {@link #nextTurn(Piece, Position, int)} to choose another piece.
      *
      * @param piece the piece to move
      * @param newPos the new position to move to
      * @return the piece capture (null otherwise)
      */
     public Piece nextTurn(Piece piece, Position newPos) {
+        return nextTurn(piece, newPos, Piece.QUEEN);
+    }
+
+    /**
+     * Plays a packed move, checking that it is legal first
+     *
+     * @param move the move, packed as by {@code Move.encode}
+     * @return the piece captured (null otherwise)
+     * @throws IllegalArgumentException if the move is not legal
+     */
+    public Piece makeMove(int move) {
+        Piece piece = board[Move.getFromRow(move)][Move.getFromCol(move)].getPiece();
+        Position newPos = board[Move.getToRow(move)][Move.getToCol(move)];
+        if (piece == null || piece.getColor() != currentTurn || !piece.isValidMove(newPos)) {
+            throw new IllegalArgumentException("Illegal move: " + Move.toString(move));
+        }
+        return nextTurn(piece, newPos, Move.getPromotion(move));
+    }
+
+    /**
+     * Moves to the next turn. {@code Piece.isValidMove()} must be called first.
+     *
+     * @param piece the piece to move
+     * @param newPos the new position to move to
+     * @param promotion the type of piece a pawn reaching the other side is
+     * promoted to, a queen if 0
+     * @return the piece capture (null otherwise)
+     */
+    public Piece nextTurn(Piece piece, Position newPos, int promotion) {
         Piece result = null;
         //resets a pawn's ability for en passent, loops through all of the pieces
         for (int i = 0; i < pieces.size(); i++) {
@@ -96,39 +926,31 @@ public class Game implements Serializable {
         }
         //if the piece is ours
         if (piece.getColor() == currentTurn) {
+            hash ^= stateKey() ^ key(piece, piece.getPosition());//take the moving piece out of the hash
             Position oldPos = piece.getPosition();//save the old position
+            boolean promoting = piece instanceof Pawn && (newPos.getRow() == 7 || newPos.getRow() == 0);
+            if (!promoting) {
+                promotion = 0;
+            } else if (promotion < Piece.KNIGHT || promotion > Piece.QUEEN) {
+                promotion = Piece.QUEEN;
+            }
+            int move = Move.encode(oldPos, newPos, promotion);
             boolean twoUp = piece instanceof Pawn && ((Pawn) piece).twoUp(newPos);//whether or not a pawn has moved up
+            //the square of a pawn taken en passant is vacated as well
+            Position passedPos = piece instanceof Pawn && ((Pawn) piece).enPassant(newPos)
+                    ? board[oldPos.getRow()][newPos.getCol()] : null;
+            Piece rook = null;//the rook that moves when castling
             result = piece.move(newPos);//move the piece and save any captured piece
             //if we have taken a piece, remove it and add it to the list of removed pieces
             if (newPos.isOccupied() && result != null) {
                 pieces.remove(result);
                 removed.add(result);
+                hash ^= key(result, result.getPosition());
             }
             //if the pawn has reached the other side of the board, promote it.
-            if (piece instanceof Pawn && (newPos.getRow() == 7 || newPos.getRow() == 0)) {
-                int tempColor = piece.getColor();
-                //possible pieces to promote to
-                Object[] possibilities = {"Queen", "Rook", "Bishop", "Knight"};
-                //show an option dialogue of options and save the user's choice
-                String s = (String) JOptionPane.showInputDialog(
-                        null,
-                        "Which piece would you like?",
-                        "Pawn Promotion",
-                        JOptionPane.PLAIN_MESSAGE,
-                        null,
-                        possibilities,
-                        "chess");
+            if (promoting) {
                 pieces.remove(piece);//remove the pawn
-                //based on user input set the piece to the selected piece
-                if (s.equals(possibilities[0])) {
-                    newPos.setPiece(new Queen(newPos, tempColor, this));
-                } else if (s.equals(possibilities[1])) {
-                    newPos.setPiece(new Rook(newPos, tempColor, this));
-                } else if (s.equals(possibilities[2])) {
-                    newPos.setPiece(new Bishop(newPos, tempColor, this));
-                } else if (s.equals(possibilities[3])) {
-                    newPos.setPiece(new Knight(newPos, tempColor, this));
-                }
+                newPos.setPiece(Piece.create(promotion, newPos, piece.getColor(), this));
                 pieces.add(newPos.getPiece());//add t to the list of new pieces
 
             } else if (twoUp) {//if the pawn has moved up two spots, the pawn can be taken via en passent
@@ -136,14 +958,106 @@ public class Game implements Serializable {
                 //if the king moves two over to the right (castling)
             } else if (piece instanceof King && oldPos.getCol() + 2 == newPos.getCol()
                     && board[oldPos.getRow()][7].isOccupied()) {
-                board[oldPos.getRow()][7].getPiece().move(board[oldPos.getRow()][5]);
+                rook = board[oldPos.getRow()][7].getPiece();
+                rook.move(board[oldPos.getRow()][5]);
                 //if the king moves two over to the left (castling)
             } else if (piece instanceof King && oldPos.getCol() - 2 == newPos.getCol()
                     && board[oldPos.getRow()][0].isOccupied()) {
-                board[oldPos.getRow()][0].getPiece().move(board[oldPos.getRow()][3]);
+                rook = board[oldPos.getRow()][0].getPiece();
+                rook.move(board[oldPos.getRow()][3]);
             }
             currentTurn = Math.abs(currentTurn - 1);//change the current turn
+            hash ^= key(newPos.getPiece(), newPos) ^ stateKey();
+            if (rook != null) {
+                hash ^= key(rook, board[oldPos.getRow()][newPos.getCol() == 6 ? 7 : 0]) ^ key(rook, rook.getPosition());
+            }
+            //captures and pawn moves cannot be undone, so no earlier position can come back
+            halfmoveClock = (result != null || piece instanceof Pawn) ? 0 : halfmoveClock + 1;
+            moveHistory[ply] = move;
+            if (++ply == hashHistory.length) {
+                hashHistory = Arrays.copyOf(hashHistory, ply * 2);
+                moveHistory = Arrays.copyOf(moveHistory, ply * 2);
+            }
+            hashHistory[ply] = hash;
+            check = isCheckAfterMove(newPos.getPiece(), oldPos, passedPos, rook);
+            status = null;
+            legal = null;
+            if (listeners != null) {
+                for (int i = 0; i < listeners.size(); i++) {
+                    listeners.get(i).movePlayed(this, move);
+                }
+            }
         }
         return result;//return the captured piece
     }
+
+    /**
+     * Works out whether the side to move is in check, looking only at what the
+     * last move changed: the direct attack of the piece that moved (or the
+     * castling rook) and sliders uncovered along the rays through the vacated
+     * squares. The side to move could not have been in check before the move.
+     *
+     * @param moved the piece that moved (or the promoted piece)
+     * @param from the square it moved from
+     * @param passed the square of a pawn captured en passant (null otherwise)
+     * @param rook the rook moved by castling (null otherwise)
+     * @return whether the side to move is now in check
+     */
+    private boolean isCheckAfterMove(Piece moved, Position from, Position passed, Piece rook) {
+        Position king = getKingPosition(currentTurn);
+        if (king == null) {
+            return false;
+        }
+        return (moved.getType() != Piece.KING && moved.isValidCapture(king))
+                || (rook != null && rook.isValidCapture(king))
+                || isDiscovered(king, from)
+                || (passed != null && isDiscovered(king, passed));
+    }
+
+    /**
+     * Whether a vacated square uncovers an attack on the king, by walking from
+     * the king through the square to the first piece on that line
+     *
+     * @param king the position of the king of the side to move
+     * @param vacated a square emptied by the last move
+     * @return whether an enemy slider now attacks the king through the square
+     */
+    private boolean isDiscovered(Position king, Position vacated) {
+        int deltaRow = vacated.getRow() - king.getRow();
+        int deltaCol = vacated.getCol() - king.getCol();
+        if ((deltaRow == 0 && deltaCol == 0)
+                || (deltaRow != 0 && deltaCol != 0 && Math.abs(deltaRow) != Math.abs(deltaCol))) {
+            return false; // not on a line with the king
+        }
+        int dirRow = Integer.signum(deltaRow), dirCol = Integer.signum(deltaCol);
+        int row = king.getRow() + dirRow, col = king.getCol() + dirCol;
+        while (row >= 0 && row < 8 && col >= 0 && col < 8 && board[row][col].isEmpty()) {
+            row += dirRow;
+            col += dirCol;
+        }
+        if (row < 0 || row > 7 || col < 0 || col > 7) {
+            return false;
+        }
+        Piece p = board[row][col].getPiece();
+        if (p.getColor() == currentTurn) {
+            return false;
+        }
+        boolean diagonal = dirRow != 0 && dirCol != 0;
+        return p.getType() == Piece.QUEEN
+                || p.getType() == (diagonal ? Piece.BISHOP : Piece.ROOK);
+    }
+
+    /**
+     * Recomputes the check flag and the hash history after deserialization,
+     * games saved before they existed do not carry them.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (hashHistory == null) {
+            startHistory();
+            start = GameWriter.packStart(this);
+        }
+        Position king = getKingPosition(currentTurn);
+        check = king != null && king.getPiece().inCheck(currentTurn);
+    }
 }
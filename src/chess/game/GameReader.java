@@ -0,0 +1,203 @@
+package chess.game;
+
+import chess.metrics.Metrics;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+
+/**
+ * Reads games written by {@code GameWriter}. Every game is rebuilt by playing
+ * its moves from the starting position, so a file that has been tampered with
+ * cannot produce an illegal position.
+ *
+ * @author Jurgen Aliaj
+ */
+public class GameReader implements Closeable {
+
+    private static final int SERIALIZATION_MAGIC = 0xACED;
+    private final DataInputStream in;
+    private final int version;
+
+    /**
+     * Creates a reader and reads the header
+     *
+     * @param in the stream to read from
+     * @throws IOException if the stream does not start with a supported
+     * header
+     */
+    public GameReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in instanceof BufferedInputStream ? in : new BufferedInputStream(in));
+        if (this.in.readInt() != GameWriter.MAGIC) {
+            throw new IOException("Not a saved game");
+        }
+        version = this.in.readUnsignedByte();
+        if (version < 1 || version > GameWriter.VERSION) {
+            throw new IOException("Unsupported save version " + version);
+        }
+    }
+
+    /**
+     * Reads the next game
+     *
+     * @return the game, or null at the end of the stream
+     * @throws IOException if the game cannot be read or is not legal
+     */
+    public Game read() throws IOException {
+        int flags = in.read();
+        if (flags == -1) {
+            return null;
+        }
+        Metrics.LOADS.increment();
+        Game game = (flags & GameWriter.CUSTOM_START) != 0 ? readStart(in, version) : new Game();
+        int nMoves = readVarint(in);
+        for (int i = 0; i < nMoves; i++) {
+            int move = in.readUnsignedShort();
+            try {
+                game.makeMove(move);
+            } catch (IllegalArgumentException ex) {
+                throw new IOException("Move " + i + " is not legal: " + Move.toString(move));
+            }
+        }
+        return game;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Rebuilds the starting position of a game from its packed form
+     *
+     * @param start the position as packed by {@code GameWriter.packStart}
+     * @return a new game at that position
+     */
+    static Game unpackStart(byte[] start) {
+        try {
+            return readStart(new DataInputStream(new ByteArrayInputStream(start)), GameWriter.VERSION);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Reads a starting position written by {@code GameWriter.packStart}
+     */
+    private static Game readStart(DataInputStream in, int version) throws IOException {
+        int[] squares = new int[64];
+        int[] kings = new int[2];
+        for (int i = 0; i < 64; i += 2) {
+            int b = in.readUnsignedByte();
+            squares[i] = checkCode(b >> 4, true);
+            squares[i + 1] = checkCode(b & 0xF, true);
+        }
+        for (int i = 0; i < 64; i++) {
+            if ((squares[i] & 7) == Piece.KING) {
+                kings[squares[i] >> 3]++;
+            }
+        }
+        if (kings[Game.WHITE] != 1 || kings[Game.BLACK] != 1) {
+            throw new IOException("Each side must have one king");
+        }
+        int state = in.readUnsignedByte();
+        int epCol = in.readUnsignedByte();
+        int halfmoveClock = readVarint(in);
+        int startPly = readVarint(in);
+        int[] captured = new int[readVarint(in)];
+        if (captured.length > 30) {
+            throw new IOException("Too many captured pieces");
+        }
+        for (int i = 0; i < captured.length; i++) {
+            captured[i] = checkCode(in.readUnsignedByte(), false);
+        }
+        long[] history = new long[0];
+        if (version >= 2) {
+            int n = readVarint(in);
+            if (n > halfmoveClock) {
+                throw new IOException("Too many earlier positions");
+            }
+            history = new long[n];
+            for (int i = 0; i < n; i++) {
+                history[i] = in.readLong();
+            }
+        }
+        return new Game(squares, state & 1, (state >> 1) & 0xF, epCol < 8 ? epCol : -1,
+                halfmoveClock, startPly, captured, history);
+    }
+
+    private static int checkCode(int code, boolean allowEmpty) throws IOException {
+        if ((code == 0 && allowEmpty) || (code & 7) >= Piece.PAWN && (code & 7) <= Piece.KING && code < 16) {
+            return code;
+        }
+        throw new IOException("Bad piece code " + code);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IOException("Bad number");
+    }
+
+    /**
+     * Loads a single saved game, in either the binary format or the Java
+     * serialization format used by older versions
+     *
+     * @param in the stream to read from
+     * @return the game
+     * @throws IOException if the game cannot be read
+     */
+    public static Game load(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        buffered.mark(2);
+        int magic = buffered.read() << 8 | buffered.read();
+        buffered.reset();
+        if (magic == SERIALIZATION_MAGIC) {
+            return loadLegacy(buffered);
+        }
+        Game game = new GameReader(buffered).read();
+        if (game == null) {
+            throw new EOFException("No game saved");
+        }
+        return game;
+    }
+
+    /**
+     * Reads a game saved with Java serialization by older versions. Only the
+     * classes such a save can contain are allowed to be created.
+     */
+    private static Game loadLegacy(InputStream in) throws IOException {
+        ObjectInputStream ois = new ObjectInputStream(in) {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                String name = desc.getName();
+                if (!name.startsWith("chess.game.") && !name.startsWith("[Lchess.game.")
+                        && !name.startsWith("[[Lchess.game.") && !name.equals("java.util.LinkedList")
+                        && !name.equals("java.util.ArrayList") && !name.equals("[J") && !name.equals("[I")) {
+                    throw new InvalidClassException(name, "Not allowed in a saved game");
+                }
+                return super.resolveClass(desc);
+            }
+        };
+        try {
+            return (Game) ois.readObject();
+        } catch (ClassNotFoundException | ClassCastException ex) {
+            throw new IOException("Not a saved game", ex);
+        }
+    }
+}
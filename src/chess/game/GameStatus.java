@@ -0,0 +1,57 @@
+package chess.game;
+
+/**
+ * The state of a game after a move, as returned by {@code Game.status()}
+ *
+ * @author Jurgen Aliaj
+ */
+public enum GameStatus {
+
+    /**
+     * the side to move has a legal move and is not in check
+     */
+    IN_PROGRESS,
+    /**
+     * the side to move is in check but can get out of it
+     */
+    CHECK,
+    /**
+     * the side to move is in check and has no legal move
+     */
+    CHECKMATE,
+    /**
+     * the side to move is not in check and has no legal move
+     */
+    STALEMATE,
+    /**
+     * neither side has enough material left to checkmate
+     */
+    INSUFFICIENT_MATERIAL,
+    /**
+     * the same position has occurred three times with the same side to move
+     */
+    THREEFOLD_REPETITION,
+    /**
+     * fifty moves by each side have been played without a capture or a pawn
+     * move
+     */
+    FIFTY_MOVE_RULE;
+
+    /**
+     * Whether the game has ended
+     *
+     * @return whether the game is over
+     */
+    public boolean isGameOver() {
+        return this != IN_PROGRESS && this != CHECK;
+    }
+
+    /**
+     * Whether the game has ended in a draw
+     *
+     * @return whether the game is drawn
+     */
+    public boolean isDraw() {
+        return isGameOver() && this != CHECKMATE;
+    }
+}
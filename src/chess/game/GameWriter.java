@@ -0,0 +1,165 @@
+package chess.game;
+
+import chess.metrics.Metrics;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes games in the compact binary save format. A stream starts with a
+ * header (the magic bytes "CHES" and a version number) followed by any number
+ * of games. Each game is written as its starting position and the list of
+ * moves played from it:
+ *
+ * <pre>
+ * flags      byte      bit 0 set if the game does not start from the normal position
+ * start      (only if bit 0 is set)
+ *   squares  32 bytes  one nibble per square, row * 8 + column, 0 if empty,
+ *                      otherwise color * 8 + type
+ *   state    byte      whose turn it is in bit 0, castling rights in bits 1-4
+ *   epCol    byte      the en passant column, 0xFF if none
+ *   clock    varint    the halfmove clock
+ *   startPly varint    the half moves played before the starting position
+ *   captured varint n, then n bytes of color * 8 + type
+ *   history  varint n, then n longs: the hashes of the positions before the
+ *                      start since the last capture or pawn move, oldest first
+ *                      (from version 2)
+ * moves      varint n, then n shorts packed as by {@code Move.encode}
+ * </pre>
+ *
+ * A game from the normal starting position costs a few bytes plus two bytes
+ * per move.
+ *
+ * @author Jurgen Aliaj
+ */
+public class GameWriter implements Closeable {
+
+    static final int MAGIC = 0x43484553; // "CHES"
+    static final int VERSION = 2;
+    static final int CUSTOM_START = 1;
+    private final DataOutputStream out;
+
+    /**
+     * Creates a writer and writes the header
+     *
+     * @param out the stream to write to
+     * @throws IOException if the header cannot be written
+     */
+    public GameWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+    }
+
+    /**
+     * Writes a game
+     *
+     * @param game the game to write
+     * @throws IOException if the game cannot be written
+     */
+    public void write(Game game) throws IOException {
+        Metrics.SAVES.increment();
+        byte[] start = game.getStart();
+        if (start == null) {
+            out.writeByte(0);
+        } else {
+            out.writeByte(CUSTOM_START);
+            out.write(start);
+        }
+        writeVarint(out, game.getPly());
+        for (int i = 0; i < game.getPly(); i++) {
+            out.writeShort(game.getMove(i));
+        }
+    }
+
+    /**
+     * Writes only the current position of a game, with what is needed to go
+     * on playing from it (clocks, captured pieces and the positions a later
+     * one could repeat). Its size does not depend on the length of the game;
+     * it is read back as a game starting from that position.
+     *
+     * @param game the game to write
+     * @throws IOException if the game cannot be written
+     */
+    public void writePosition(Game game) throws IOException {
+        Metrics.SAVES.increment();
+        out.writeByte(CUSTOM_START);
+        out.write(packStart(game));
+        writeVarint(out, 0);
+    }
+
+    /**
+     * Flushes any buffered bytes to the stream
+     *
+     * @throws IOException if the stream cannot be flushed
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Packs the current position of a game as the start of a saved game,
+     * including the pieces already captured
+     *
+     * @param game the game
+     * @return the packed starting position
+     */
+    static byte[] packStart(Game game) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(48);
+        for (int i = 0; i < 64; i += 2) {
+            bytes.write(code(game.board[i / 8][i % 8].getPiece()) << 4
+                    | code(game.board[(i + 1) / 8][(i + 1) % 8].getPiece()));
+        }
+        bytes.write(game.getCurrentTurn() | game.getCastlingRights() << 1);
+        bytes.write(game.getEnPassantCol() & 0xFF);
+        writeVarint(bytes, game.getHalfmoveClock());
+        writeVarint(bytes, game.getStartPly() + game.getPly());
+        writeVarint(bytes, game.removed.size());
+        for (Piece p : game.removed) {
+            bytes.write(code(p));
+        }
+        //keeps threefold repetition working across the start
+        long[] history = game.getRecentHashes();
+        writeVarint(bytes, history.length);
+        for (int i = 0; i < history.length; i++) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes.write((int) (history[i] >>> shift));
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Gets the code of a piece, color * 8 + type, 0 if there is none
+     */
+    static int code(Piece p) {
+        return p == null ? 0 : p.getColor() * 8 + p.getType();
+    }
+
+    /**
+     * Writes an unsigned number seven bits at a time, low bits first
+     */
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
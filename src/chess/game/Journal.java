@@ -0,0 +1,400 @@
+package chess.game;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a game safe on disk while it is played. Every move is appended to a
+ * journal file as two bytes, and every so often the current position is
+ * written to a snapshot file and the journal is started again, so saving costs
+ * the same however long the game runs. After a crash the game is rebuilt by
+ * loading the snapshot and playing the moves in the journal.
+ * <p>
+ * The journal starts with the hash of the position it continues from, so a
+ * journal that does not belong to the snapshot (for example after a crash
+ * between writing a snapshot and restarting the journal) is ignored. A move
+ * that was only partly written is ignored as well.
+ * <p>
+ * The files are written by a thread of the journal's own, so playing a move
+ * only queues it and never waits for the disk. The methods that write a
+ * snapshot or force the journal wait for the moves queued before them.
+ *
+ * @author Jurgen Aliaj
+ */
+public class Journal implements MoveListener, Closeable {
+
+    /**
+     * When appended moves are forced to disk. Moves are always handed to the
+     * operating system as soon as the writer gets to them; forcing them
+     * guarantees they survive a power failure too, at the cost of keeping
+     * the disk busy.
+     */
+    public static final class SyncPolicy {
+
+        private final int moves;
+        private final long millis;
+
+        private SyncPolicy(int moves, long millis) {
+            this.moves = moves;
+            this.millis = millis;
+        }
+
+        /**
+         * Forces every move to disk before the next one is written
+         *
+         * @return the policy
+         */
+        public static SyncPolicy everyMove() {
+            return new SyncPolicy(1, 0);
+        }
+
+        /**
+         * Forces moves to disk in batches
+         *
+         * @param moves the number of moves in a batch
+         * @return the policy
+         */
+        public static SyncPolicy everyMoves(int moves) {
+            if (moves < 1) {
+                throw new IllegalArgumentException("moves must be positive");
+            }
+            return new SyncPolicy(moves, 0);
+        }
+
+        /**
+         * Forces moves to disk at most once in a period, and at the latest at
+         * the end of the period in which they were played
+         *
+         * @param millis the period in milliseconds
+         * @return the policy
+         */
+        public static SyncPolicy everyMillis(long millis) {
+            if (millis < 1) {
+                throw new IllegalArgumentException("millis must be positive");
+            }
+            return new SyncPolicy(0, millis);
+        }
+
+        /**
+         * Leaves it to the operating system, moves survive the program
+         * crashing but not the machine
+         *
+         * @return the policy
+         */
+        public static SyncPolicy never() {
+            return new SyncPolicy(0, 0);
+        }
+    }
+
+    private static final int MAGIC = 0x43484A4E; // "CHJN"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 13;
+    private final File saveFile;
+    private final File journalFile;
+    private final SyncPolicy policy;
+    private final int snapshotInterval;
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "journal-writer");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    private volatile Game game;
+    private int sinceSnapshot;
+    //only used on the writer thread
+    private final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+    private FileChannel channel;
+    private int unsynced;
+    private long lastSync;
+    private boolean syncScheduled;
+
+    /**
+     * Creates a journal
+     *
+     * @param saveFile the file holding the snapshot
+     * @param journalFile the file holding the moves since the snapshot
+     * @param policy when moves are forced to disk
+     * @param snapshotInterval the number of moves between snapshots, 0 to only
+     * write one when a game is attached or the journal is closed
+     */
+    public Journal(File saveFile, File journalFile, SyncPolicy policy, int snapshotInterval) {
+        this.saveFile = saveFile;
+        this.journalFile = journalFile;
+        this.policy = policy;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Rebuilds the game from the snapshot and the journal
+     *
+     * @return the game, a new {@code Game} if nothing was saved
+     */
+    public synchronized Game recover() {
+        Game g = null;
+        if (saveFile.exists()) {
+            try (InputStream in = new FileInputStream(saveFile)) {
+                g = GameReader.load(in);
+            } catch (IOException ex) {
+                System.err.println(ex);
+            }
+        }
+        if (g == null) {
+            g = new Game();
+        }
+        if (journalFile.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+                if (in.readInt() == MAGIC && in.readUnsignedByte() == VERSION && in.readLong() == g.getHash()) {
+                    while (true) {
+                        g.makeMove(in.readUnsignedShort());
+                    }
+                }
+            } catch (EOFException | IllegalArgumentException ex) {
+                //the end of the journal, or a move that was not fully written
+            } catch (IOException ex) {
+                System.err.println(ex);
+            }
+        }
+        return g;
+    }
+
+    /**
+     * Starts journaling a game: writes a snapshot of it, starts a new journal
+     * and records every move played from then on. A game attached before is
+     * no longer recorded.
+     *
+     * @param g the game
+     * @throws IOException if the snapshot or the journal cannot be written
+     */
+    public synchronized void attach(Game g) throws IOException {
+        if (game != null) {
+            game.removeMoveListener(this);
+        }
+        game = g;
+        snapshot();
+        game.addMoveListener(this);
+    }
+
+    /**
+     * Writes a snapshot of the current position and starts a new journal. The
+     * snapshot is written to a temporary file and moved into place, so a
+     * crash leaves either the old or the new snapshot.
+     *
+     * @throws IOException if the snapshot or the journal cannot be written
+     */
+    public synchronized void snapshot() throws IOException {
+        final Game position = game.copy();
+        sinceSnapshot = 0;
+        await(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                writeSnapshot(position);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Queues a move of the attached game to be appended to the journal, with
+     * a copy of the position when a snapshot is due
+     *
+     * @param g the game the move was played in
+     * @param move the move
+     */
+    @Override
+    public synchronized void movePlayed(Game g, int move) {
+        if (g != game) {
+            return;
+        }
+        final Game position;
+        if (snapshotInterval > 0 && ++sinceSnapshot >= snapshotInterval) {
+            position = g.copy();
+            sinceSnapshot = 0;
+        } else {
+            position = null;
+        }
+        final short written = (short) move;
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    append(written, position);
+                } catch (IOException ex) {
+                    System.err.println(ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Forces the moves played so far to disk
+     *
+     * @throws IOException if the journal cannot be forced
+     */
+    public void sync() throws IOException {
+        await(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                force();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Writes a final snapshot and closes the journal
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        final Game position = game == null ? null : game.copy();
+        if (game != null) {
+            game.removeMoveListener(this);
+            game = null;
+        }
+        try {
+            await(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    try {
+                        if (position != null) {
+                            writeSnapshot(position);
+                        }
+                    } finally {
+                        if (channel != null) {
+                            channel.close();
+                            channel = null;
+                        }
+                    }
+                    return null;
+                }
+            });
+        } finally {
+            writer.shutdown();
+        }
+    }
+
+    /**
+     * Runs a task on the writer thread after the moves queued before it, and
+     * waits for it
+     */
+    private void await(Callable<Void> task) throws IOException {
+        try {
+            writer.submit(task).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * Writes a snapshot and starts a new journal, on the writer thread
+     */
+    private void writeSnapshot(Game position) throws IOException {
+        File tmp = new File(saveFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            GameWriter gw = new GameWriter(out);
+            gw.writePosition(position);
+            gw.flush();
+            out.getFD().sync();
+        }
+        try {
+            Files.move(tmp.toPath(), saveFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmp.toPath(), saveFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (channel == null) {
+            channel = new RandomAccessFile(journalFile, "rw").getChannel();
+        }
+        channel.truncate(0);
+        buffer.clear();
+        buffer.putInt(MAGIC).put((byte) VERSION).putLong(position.getHash()).flip();
+        channel.write(buffer, 0);
+        channel.position(HEADER_SIZE);
+        channel.force(false);
+        lastSync = System.currentTimeMillis();
+        unsynced = 0;
+    }
+
+    /**
+     * Appends a move, then writes the snapshot that is due or forces the
+     * journal as the policy says, on the writer thread
+     */
+    private void append(short move, Game position) throws IOException {
+        if (channel == null) {
+            return;
+        }
+        buffer.clear();
+        buffer.putShort(move).flip();
+        channel.write(buffer);
+        unsynced++;
+        if (position != null) {
+            writeSnapshot(position);
+        } else if (policy.moves > 0 && unsynced >= policy.moves) {
+            force();
+        } else if (policy.millis > 0) {
+            if (System.currentTimeMillis() - lastSync >= policy.millis) {
+                force();
+            } else if (!syncScheduled) {
+                scheduleSync();
+            }
+        }
+    }
+
+    /**
+     * Forces the moves appended so far to disk, on the writer thread
+     */
+    private void force() throws IOException {
+        if (unsynced > 0 && channel != null) {
+            channel.force(false);
+            unsynced = 0;
+        }
+        lastSync = System.currentTimeMillis();
+    }
+
+    /**
+     * Forces the moves of the current period at its end
+     */
+    private void scheduleSync() {
+        syncScheduled = true;
+        writer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                syncScheduled = false;
+                try {
+                    force();
+                } catch (IOException ex) {
+                    System.err.println(ex);
+                }
+            }
+        }, Math.max(policy.millis - (System.currentTimeMillis() - lastSync), 1), TimeUnit.MILLISECONDS);
+    }
+}
@@ -7,6 +7,8 @@ package chess.game;
  */
 public class King extends Piece {
 
+    private static final long serialVersionUID = 1203946203594230729L;
+
     /**
      * Inherit behavior from parent class
      *
@@ -18,6 +20,11 @@ public class King extends Piece {
         super(pos, color, game);
     }
 
+    @Override
+    public int getType() {
+        return KING;
+    }
+
     /**
      * Checks that the move does not violate general rules
      * 
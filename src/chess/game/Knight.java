@@ -7,6 +7,8 @@ package chess.game;
  */
 public class Knight extends Piece {
 
+    private static final long serialVersionUID = -4140550025130018933L;
+
     /**
      *
      * @param pos
@@ -17,6 +19,11 @@ public class Knight extends Piece {
         super(pos, color, game);
     }
 
+    @Override
+    public int getType() {
+        return KNIGHT;
+    }
+
     @Override
     /**
      * Checks that the move does not violate general rules
@@ -0,0 +1,110 @@
+package chess.game;
+
+/**
+ * Packs a move into an int: the square moved from in bits 0-5, the square
+ * moved to in bits 6-11 and the piece a pawn is promoted to in bits 12-14.
+ * Squares are numbered row * 8 + column, so a move fits in 15 bits.
+ *
+ * @author Jurgen Aliaj
+ */
+public final class Move {
+
+    /**
+     * the value used where there is no move
+     */
+    public static final int NONE = 0;
+
+    private Move() {
+    }
+
+    /**
+     * Packs a move
+     *
+     * @param fromRow the row moved from
+     * @param fromCol the column moved from
+     * @param toRow the row moved to
+     * @param toCol the column moved to
+     * @param promotion the piece type a pawn is promoted to, 0 if none
+     * @return the packed move
+     */
+    public static int encode(int fromRow, int fromCol, int toRow, int toCol, int promotion) {
+        return (fromRow * 8 + fromCol) | (toRow * 8 + toCol) << 6 | promotion << 12;
+    }
+
+    /**
+     * Packs a move between two positions
+     *
+     * @param from the position moved from
+     * @param to the position moved to
+     * @param promotion the piece type a pawn is promoted to, 0 if none
+     * @return the packed move
+     */
+    public static int encode(Position from, Position to, int promotion) {
+        return encode(from.getRow(), from.getCol(), to.getRow(), to.getCol(), promotion);
+    }
+
+    public static int getFromRow(int move) {
+        return (move >>> 3) & 7;
+    }
+
+    public static int getFromCol(int move) {
+        return move & 7;
+    }
+
+    public static int getToRow(int move) {
+        return (move >>> 9) & 7;
+    }
+
+    public static int getToCol(int move) {
+        return (move >>> 6) & 7;
+    }
+
+    /**
+     * Gets the piece type a pawn is promoted to
+     *
+     * @param move the packed move
+     * @return the piece type, 0 if the move is not a promotion
+     */
+    public static int getPromotion(int move) {
+        return (move >>> 12) & 7;
+    }
+
+    /**
+     * Converts a move to coordinate notation, ex e2e4 or e7e8q
+     *
+     * @param move the packed move
+     * @return the move as a String
+     */
+    public static String toString(int move) {
+        StringBuilder sb = new StringBuilder(5);
+        sb.append((char) ('a' + getFromCol(move))).append((char) ('1' + getFromRow(move)));
+        sb.append((char) ('a' + getToCol(move))).append((char) ('1' + getToRow(move)));
+        if (getPromotion(move) != 0) {
+            sb.append(" pnbrqk".charAt(getPromotion(move)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads a move in coordinate notation, ex e2e4 or e7e8q
+     *
+     * @param s the move as a String
+     * @return the packed move
+     * @throws IllegalArgumentException if the String is not a move
+     */
+    public static int parse(String s) {
+        if (s.length() < 4 || s.length() > 5
+                || s.charAt(0) < 'a' || s.charAt(0) > 'h' || s.charAt(1) < '1' || s.charAt(1) > '8'
+                || s.charAt(2) < 'a' || s.charAt(2) > 'h' || s.charAt(3) < '1' || s.charAt(3) > '8') {
+            throw new IllegalArgumentException("Not a move: " + s);
+        }
+        int promotion = 0;
+        if (s.length() == 5) {
+            promotion = "nbrq".indexOf(Character.toLowerCase(s.charAt(4))) + Piece.KNIGHT;
+            if (promotion < Piece.KNIGHT) {
+                throw new IllegalArgumentException("Not a move: " + s);
+            }
+        }
+        return encode(s.charAt(1) - '1', s.charAt(0) - 'a', s.charAt(3) - '1', s.charAt(2) - 'a', promotion);
+    }
+}
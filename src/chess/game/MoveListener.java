@@ -0,0 +1,17 @@
+package chess.game;
+
+/**
+ * Notified by {@code Game.nextTurn} after every move
+ *
+ * @author Jurgen Aliaj
+ */
+public interface MoveListener {
+
+    /**
+     * Called after a move has been played
+     *
+     * @param game the game the move was played in
+     * @param move the move, packed as by {@code Move.encode}
+     */
+    void movePlayed(Game game, int move);
+}
@@ -7,6 +7,7 @@ package chess.game;
  */
 public class Pawn extends Piece {
 
+    private static final long serialVersionUID = 4631377369424528431L;
     boolean enPassantOpportunity;
 
     /**
@@ -20,6 +21,17 @@ public class Pawn extends Piece {
         enPassantOpportunity = false;
     }
 
+    @Override
+    public int getType() {
+        return PAWN;
+    }
+
+    @Override
+    void copyFrom(Piece other, Position pos) {
+        super.copyFrom(other, pos);
+        enPassantOpportunity = ((Pawn) other).enPassantOpportunity;
+    }
+
     @Override
     /**
      * Checks that move does not violate general rules
@@ -107,6 +119,8 @@ public class Pawn extends Piece {
     public boolean rightEnPassant(Position newPos) {
         return game.board[curPos.getRow()][curPos.getCol() + 1].getPiece() instanceof Pawn // piece directly beside is pawn
                 && ((Pawn) game.board[curPos.getRow()][curPos.getCol() + 1].getPiece()).enPassantOpportunity // piece has jumped two positions and only has 1 move
+                && game.board[curPos.getRow()][curPos.getCol() + 1].getPiece().getColor() != getColor() // and is an enemy pawn
+                && !newPos.isOccupied() // the square passed over is always empty
                 && ((newPos.getRow() == curPos.getRow() + 1 && getColor() == Game.WHITE) // forward up
                 || (newPos.getRow() == curPos.getRow() - 1 && getColor() == Game.BLACK))
                 && newPos.getCol() == curPos.getCol() + 1; // diagonally to the right
@@ -121,6 +135,8 @@ public class Pawn extends Piece {
     public boolean leftEnPassant(Position newPos) {
         return game.board[curPos.getRow()][curPos.getCol() - 1].getPiece() instanceof Pawn // {...}
                 && ((Pawn) game.board[curPos.getRow()][curPos.getCol() - 1].getPiece()).enPassantOpportunity
+                && game.board[curPos.getRow()][curPos.getCol() - 1].getPiece().getColor() != getColor()
+                && !newPos.isOccupied()
                 && ((newPos.getRow() == curPos.getRow() + 1 && getColor() == Game.WHITE)
                 || (newPos.getRow() == curPos.getRow() - 1 && getColor() == Game.BLACK))
                 && newPos.getCol() == curPos.getCol() - 1;
@@ -1,5 +1,6 @@
 package chess.game;
 
+import chess.metrics.Metrics;
 import java.io.Serializable;
 
 /**
@@ -7,8 +8,15 @@ import java.io.Serializable;
  *
  * @author Abel MacNeil, Jurgen Aliaj
  */
-public abstract class Piece implements Serializable {
+public abstract class Piece implements Serializable, Cloneable {
 
+    private static final long serialVersionUID = -726997183108459603L;
+    public static final int PAWN = 1;
+    public static final int KNIGHT = 2;
+    public static final int BISHOP = 3;
+    public static final int ROOK = 4;
+    public static final int QUEEN = 5;
+    public static final int KING = 6;
     protected Position curPos;
     private int color;
     protected Game game;
@@ -27,6 +35,74 @@ public abstract class Piece implements Serializable {
         nMoves = 0;
     }
 
+    /**
+     * Creates a new piece of the given type.
+     *
+     * @param type the type of piece ({@code Piece.PAWN} ... {@code Piece.KING})
+     * @param pos the piece's position
+     * @param color the color (Game.BLACK or Game.WHITE)
+     * @param game the game the piece belongs to
+     * @return the new piece
+     */
+    public static Piece create(int type, Position pos, int color, Game game) {
+        switch (type) {
+            case PAWN:
+                return new Pawn(pos, color, game);
+            case KNIGHT:
+                return new Knight(pos, color, game);
+            case BISHOP:
+                return new Bishop(pos, color, game);
+            case ROOK:
+                return new Rook(pos, color, game);
+            case QUEEN:
+                return new Queen(pos, color, game);
+            case KING:
+                return new King(pos, color, game);
+            default:
+                throw new IllegalArgumentException("Unknown piece type: " + type);
+        }
+    }
+
+    /**
+     * Gets the type of the piece, one of {@code Piece.PAWN} ...
+     * {@code Piece.KING}
+     *
+     * @return the type of the piece
+     */
+    public abstract int getType();
+
+    /**
+     * Copies this piece into another game, used by {@code Game.copy()}
+     *
+     * @param pos the position of the copy in the other game
+     * @param game the game the copy belongs to
+     * @return a copy of this piece with the same state
+     */
+    Piece copy(Position pos, Game game) {
+        Piece p;
+        try {
+            p = (Piece) clone(); // field-wise copy, cheaper than going through the constructors
+        } catch (CloneNotSupportedException ex) {
+            throw new AssertionError(ex);
+        }
+        p.curPos = pos;
+        p.game = game;
+        return p;
+    }
+
+    /**
+     * Gives this piece the state of another of the same kind, used by
+     * {@code Game.copyFrom} to reuse pieces
+     *
+     * @param other the piece to copy
+     * @param pos the position of this piece in its own game
+     */
+    void copyFrom(Piece other, Position pos) {
+        curPos = pos;
+        color = other.color;
+        nMoves = other.nMoves;
+    }
+
     /**
      * Check if the move does not result in the king being exposed.
      * All subclasses should call super.isValidMove(pos);
@@ -35,19 +111,34 @@ public abstract class Piece implements Serializable {
      * @return whether or not the new position is a valid move
      */
     public boolean isValidMove(Position newPos) {
-        Position oldPos = this.getPosition(); // temporarily move the piece to the new position
-        Piece tempPiece = this.move(newPos);
-        //remove the piece if it exists and is not a King
-        if (tempPiece != null && !(tempPiece instanceof King)) {
-            game.pieces.remove(tempPiece);
+        Position oldPos = this.getPosition();
+        if (newPos == oldPos) {
+            return !this.inCheck(getColor());
+        }
+        //the captured piece, which is beside the pawn when taking en passant
+        Position takenPos = newPos;
+        if (this instanceof Pawn && ((Pawn) this).enPassant(newPos)) {
+            takenPos = game.board[oldPos.getRow()][newPos.getCol()];
+        }
+        Piece taken = takenPos.getPiece();
+        int index = -1;
+        //take it off the board, remembering its place in the list (kings stay in the list)
+        if (taken != null && !(taken instanceof King)) {
+            index = game.pieces.indexOf(taken);
+            game.pieces.remove(index);
         }
+        takenPos.setPiece(null);
+        oldPos.setPiece(null); // temporarily move the piece to the new position
+        newPos.setPiece(this);
+        curPos = newPos;
         boolean n = this.inCheck(getColor()); // check if the side is in check
-        newPos.getPiece().move(oldPos); //move the pieces back to their original positions
-        newPos.setPiece(tempPiece);
-        if (tempPiece != null && !(tempPiece instanceof King)) {
-            game.pieces.add(newPos.getPiece());
+        curPos = oldPos; //move the pieces back to their original positions
+        newPos.setPiece(null);
+        oldPos.setPiece(this);
+        takenPos.setPiece(taken);
+        if (index != -1) {
+            game.pieces.add(index, taken);
         }
-        oldPos.getPiece().nMoves -= 2; // balance the number of moves again
         return !n;
     }
 
@@ -121,6 +212,7 @@ public abstract class Piece implements Serializable {
      * @return whether or not our king is in check
      */
     public boolean inCheck(int color) {
+        Metrics.CHECK_TESTS.increment();
         for (int i = 0; i < game.pieces.size(); i++) {
             if (game.pieces.get(i).getColor() != color && game.pieces.get(i).isValidCapture(getKingPosition(Math.abs(color)))) {
                 return true;
@@ -9,6 +9,7 @@ import java.io.Serializable;
  */
 public class Position implements Serializable {
 
+    private static final long serialVersionUID = -2189400501332522372L;
     private int row;
     private int col;
     private Piece piece;
@@ -7,6 +7,8 @@ package chess.game;
  */
 public class Queen extends Piece {
 
+    private static final long serialVersionUID = 1020135970961790835L;
+
     /**
      *
      * @param pos
@@ -17,6 +19,11 @@ public class Queen extends Piece {
         super(pos, color, game);
     }
 
+    @Override
+    public int getType() {
+        return QUEEN;
+    }
+
     @Override
     /**
      * Checks that the move does not violate general rules
@@ -7,6 +7,8 @@ package chess.game;
  */
 public class Rook extends Piece {
 
+    private static final long serialVersionUID = -2650093585339149018L;
+
     /**
      *
      * @param pos
@@ -17,6 +19,11 @@ public class Rook extends Piece {
         super(pos, color, game);
     }
 
+    @Override
+    public int getType() {
+        return ROOK;
+    }
+
     @Override
     /**
      * Checks that the move does not violate general rules
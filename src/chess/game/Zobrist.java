@@ -0,0 +1,89 @@
+package chess.game;
+
+/**
+ * The random keys used to hash positions. A position's hash is the exclusive
+ * or of the keys of every piece on its square, the castling rights, the en
+ * passant file and the side to move, so a move only changes a few keys. The
+ * keys come from a fixed seed so hashes are the same in every run and can be
+ * stored in files.
+ *
+ * @author Jurgen Aliaj
+ */
+public final class Zobrist {
+
+    private static final long[] PIECES = new long[2 * 7 * 64];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT = new long[8];
+    private static final long SIDE;
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < PIECES.length; i++) {
+            PIECES[i] = seed = next(seed);
+        }
+        for (int i = 0; i < CASTLING.length; i++) {
+            CASTLING[i] = seed = next(seed);
+        }
+        for (int i = 0; i < EN_PASSANT.length; i++) {
+            EN_PASSANT[i] = seed = next(seed);
+        }
+        SIDE = next(seed);
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Steps the generator (splitmix64), the returned value is also the next
+     * seed
+     */
+    private static long next(long seed) {
+        long z = seed + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Gets the key of a piece on a square
+     *
+     * @param color the color of the piece
+     * @param type the type of the piece ({@code Piece.PAWN} ...
+     * {@code Piece.KING})
+     * @param row the row of the square
+     * @param col the column of the square
+     * @return the key
+     */
+    public static long piece(int color, int type, int row, int col) {
+        return PIECES[(color * 7 + type) * 64 + row * 8 + col];
+    }
+
+    /**
+     * Gets the key of a set of castling rights
+     *
+     * @param rights the rights, as returned by {@code Game.getCastlingRights()}
+     * @return the key
+     */
+    public static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    /**
+     * Gets the key of an en passant file
+     *
+     * @param col the column a pawn can be taken en passant on
+     * @return the key
+     */
+    public static long enPassant(int col) {
+        return EN_PASSANT[col];
+    }
+
+    /**
+     * Gets the key that is added when black is to move
+     *
+     * @return the key
+     */
+    public static long side() {
+        return SIDE;
+    }
+}
@@ -0,0 +1,91 @@
+package chess.metrics;
+
+/**
+ * Reads the counters of {@code Metrics} for JMX
+ *
+ * @author Jurgen Aliaj
+ */
+public class EngineMetrics implements EngineMetricsMBean {
+
+    private long sampleTime = System.nanoTime();
+    private long sampleNodes;
+    private long nodesPerSecond;
+
+    @Override
+    public long getLegalMoveGenerations() {
+        return Metrics.LEGAL_MOVE_GENERATIONS.sum();
+    }
+
+    @Override
+    public long getCheckTests() {
+        return Metrics.CHECK_TESTS.sum();
+    }
+
+    @Override
+    public long getNodes() {
+        return Metrics.NODES.sum();
+    }
+
+    @Override
+    public synchronized long getNodesPerSecond() {
+        long now = System.nanoTime();
+        if (now - sampleTime >= 1000000000L) {
+            long nodes = Metrics.NODES.sum();
+            nodesPerSecond = Math.max(0, (nodes - sampleNodes) * 1000000000L / (now - sampleTime));
+            sampleNodes = nodes;
+            sampleTime = now;
+        }
+        return nodesPerSecond;
+    }
+
+    @Override
+    public long getTranspositionProbes() {
+        return Metrics.TRANSPOSITION_PROBES.sum();
+    }
+
+    @Override
+    public double getTranspositionHitRate() {
+        long probes = Metrics.TRANSPOSITION_PROBES.sum();
+        return probes == 0 ? 0 : (double) Metrics.TRANSPOSITION_HITS.sum() / probes;
+    }
+
+    @Override
+    public long getCutoffs() {
+        return Metrics.CUTOFFS.sum();
+    }
+
+    @Override
+    public double getCutoffRate() {
+        long nodes = Metrics.NODES.sum();
+        return nodes == 0 ? 0 : (double) Metrics.CUTOFFS.sum() / nodes;
+    }
+
+    @Override
+    public long getActiveSessions() {
+        return Metrics.ACTIVE_SESSIONS.sum();
+    }
+
+    @Override
+    public long getSaves() {
+        return Metrics.SAVES.sum();
+    }
+
+    @Override
+    public long getLoads() {
+        return Metrics.LOADS.sum();
+    }
+
+    @Override
+    public synchronized void reset() {
+        Metrics.LEGAL_MOVE_GENERATIONS.reset();
+        Metrics.CHECK_TESTS.reset();
+        Metrics.NODES.reset();
+        Metrics.TRANSPOSITION_PROBES.reset();
+        Metrics.TRANSPOSITION_HITS.reset();
+        Metrics.CUTOFFS.reset();
+        Metrics.SAVES.reset();
+        Metrics.LOADS.reset();
+        sampleNodes = 0;
+        sampleTime = System.nanoTime();
+    }
+}
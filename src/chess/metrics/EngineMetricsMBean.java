@@ -0,0 +1,53 @@
+package chess.metrics;
+
+/**
+ * The counters of {@code Metrics} as seen through JMX, under the name
+ * {@code chess:type=Engine}
+ *
+ * @author Jurgen Aliaj
+ */
+public interface EngineMetricsMBean {
+
+    long getLegalMoveGenerations();
+
+    long getCheckTests();
+
+    long getNodes();
+
+    /**
+     * Gets the nodes searched per second, over the time since the last call
+     * at least a second ago
+     *
+     * @return the rate
+     */
+    long getNodesPerSecond();
+
+    long getTranspositionProbes();
+
+    /**
+     * Gets the share of transposition table probes that found the position
+     *
+     * @return the hit rate, from 0 to 1
+     */
+    double getTranspositionHitRate();
+
+    long getCutoffs();
+
+    /**
+     * Gets the share of searched nodes that were cut off by the beta bound
+     *
+     * @return the cutoff rate, from 0 to 1
+     */
+    double getCutoffRate();
+
+    long getActiveSessions();
+
+    long getSaves();
+
+    long getLoads();
+
+    /**
+     * Sets every counter back to 0, except the number of active sessions
+     */
+    void reset();
+}
@@ -0,0 +1,262 @@
+package chess.metrics;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes events to Java Flight Recorder: moves played in a game, search
+ * iterations, status checks and games saved or loaded, each with the hash of
+ * the position. The code is built for Java 7, which has no {@code jdk.jfr},
+ * so the event types are made at run time through
+ * {@code jdk.jfr.EventFactory} when it exists. An event is begun before the
+ * work and committed after it, so its start time and duration are those of
+ * the work. When there is no recorder, no recording is running or the type
+ * is disabled, nothing is made.
+ *
+ * <pre>
+ *   Object event = FlightEvents.start(FlightEvents.Type.MOVE);
+ *   ... the work ...
+ *   FlightEvents.move(event, game.getHash(), move);
+ * </pre>
+ *
+ * @author Jurgen Aliaj
+ */
+public final class FlightEvents {
+
+    /**
+     * The kinds of event
+     */
+    public enum Type {
+        /**
+         * a move played in a game, not one tried by a search
+         */
+        MOVE,
+        /**
+         * a depth of a search
+         */
+        SEARCH_ITERATION,
+        /**
+         * the status of a position worked out
+         */
+        STATUS,
+        /**
+         * a game saved or loaded
+         */
+        PERSISTENCE
+    }
+
+    //set while a recording is running, so nothing is built otherwise
+    private static volatile boolean recording;
+    private static Method newEvent, isEnabled, begin, end, shouldCommit, set, commit;
+    private static final Object[] factories = new Object[Type.values().length];
+    private static final Object[] eventTypes = new Object[Type.values().length];
+
+    static {
+        try {
+            Class<?> factory = Class.forName("jdk.jfr.EventFactory");
+            Class<?> event = Class.forName("jdk.jfr.Event");
+            set = event.getMethod("set", int.class, Object.class);
+            begin = event.getMethod("begin");
+            end = event.getMethod("end");
+            shouldCommit = event.getMethod("shouldCommit");
+            commit = event.getMethod("commit");
+            isEnabled = Class.forName("jdk.jfr.EventType").getMethod("isEnabled");
+            define(Type.MOVE, "chess.Move", "Move", "hash", long.class, "move", int.class);
+            define(Type.SEARCH_ITERATION, "chess.SearchIteration", "Search Iteration", "hash", long.class,
+                    "depth", int.class, "nodes", long.class);
+            define(Type.STATUS, "chess.Status", "Status", "hash", long.class, "status", String.class);
+            define(Type.PERSISTENCE, "chess.Persistence", "Persistence", "hash", long.class,
+                    "operation", String.class);
+            newEvent = factory.getMethod("newEvent");
+            listen();
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            //an older Java, or one built without the flight recorder
+            newEvent = null;
+            recording = false;
+        }
+    }
+
+    private FlightEvents() {
+    }
+
+    /**
+     * Tells whether events are being written
+     *
+     * @return whether a recording is running
+     */
+    public static boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Begins an event before the work it times
+     *
+     * @param type the kind of event
+     * @return the event, or null if it would not be recorded
+     */
+    public static Object start(Type type) {
+        if (!recording) {
+            return null;
+        }
+        try {
+            if (!(Boolean) isEnabled.invoke(eventTypes[type.ordinal()])) {
+                return null;
+            }
+            Object event = newEvent.invoke(factories[type.ordinal()]);
+            begin.invoke(event);
+            return event;
+        } catch (ReflectiveOperationException ex) {
+            System.err.println(ex);
+            recording = false;
+            return null;
+        }
+    }
+
+    /**
+     * Records a move played
+     *
+     * @param event what {@code start(Type.MOVE)} returned before the move
+     * @param hash the hash of the position after the move
+     * @param move the move, packed as by {@code Move.encode}
+     */
+    public static void move(Object event, long hash, int move) {
+        if (event != null) {
+            commit(event, hash, move);
+        }
+    }
+
+    /**
+     * Records a depth of a search completed
+     *
+     * @param event what {@code start(Type.SEARCH_ITERATION)} returned before
+     * the depth
+     * @param hash the hash of the position searched
+     * @param depth the depth
+     * @param nodes the nodes searched for this depth
+     */
+    public static void searchIteration(Object event, long hash, int depth, long nodes) {
+        if (event != null) {
+            commit(event, hash, depth, nodes);
+        }
+    }
+
+    /**
+     * Records the status of a position being worked out
+     *
+     * @param event what {@code start(Type.STATUS)} returned before
+     * @param hash the hash of the position
+     * @param status the status found
+     */
+    public static void status(Object event, long hash, String status) {
+        if (event != null) {
+            commit(event, hash, status);
+        }
+    }
+
+    /**
+     * Records a game saved or loaded
+     *
+     * @param event what {@code start(Type.PERSISTENCE)} returned before
+     * @param hash the hash of the current position of the game
+     * @param operation what was done, ex "save"
+     */
+    public static void persistence(Object event, long hash, String operation) {
+        if (event != null) {
+            commit(event, hash, operation);
+        }
+    }
+
+    /**
+     * Ends an event and writes it with its fields, if it passes the
+     * recording's threshold
+     */
+    private static void commit(Object event, Object... values) {
+        try {
+            end.invoke(event);
+            if (!(Boolean) shouldCommit.invoke(event)) {
+                return;
+            }
+            for (int i = 0; i < values.length; i++) {
+                set.invoke(event, i, values[i]);
+            }
+            commit.invoke(event);
+        } catch (ReflectiveOperationException ex) {
+            System.err.println(ex);
+            recording = false;
+        }
+    }
+
+    /**
+     * Makes an event type in the chess category with the given names and
+     * types of fields. Stack traces are left out: every frame above the
+     * event would be reflection, and they cost more than the events.
+     */
+    private static void define(Type type, String name, String label, Object... fields)
+            throws ReflectiveOperationException {
+        Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+        Constructor<?> annotation = annotationElement.getConstructor(Class.class, Object.class);
+        Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+        Constructor<?> field = valueDescriptor.getConstructor(Class.class, String.class, List.class);
+        Object category = Array.newInstance(String.class, 1);
+        Array.set(category, 0, "Chess");
+        List<Object> annotations = Arrays.asList(
+                annotation.newInstance(Class.forName("jdk.jfr.Name"), name),
+                annotation.newInstance(Class.forName("jdk.jfr.Label"), label),
+                annotation.newInstance(Class.forName("jdk.jfr.Category"), category),
+                annotation.newInstance(Class.forName("jdk.jfr.StackTrace"), false));
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i < fields.length; i += 2) {
+            values.add(field.newInstance(fields[i + 1], fields[i], new ArrayList<>()));
+        }
+        Object factory = Class.forName("jdk.jfr.EventFactory").getMethod("create", List.class, List.class)
+                .invoke(null, annotations, values);
+        factories[type.ordinal()] = factory;
+        eventTypes[type.ordinal()] = factory.getClass().getMethod("getEventType").invoke(factory);
+    }
+
+    /**
+     * Follows recordings starting and stopping, through a proxy for
+     * {@code jdk.jfr.FlightRecorderListener}
+     */
+    private static void listen() throws ReflectiveOperationException {
+        final Class<?> recorder = Class.forName("jdk.jfr.FlightRecorder");
+        Class<?> listener = Class.forName("jdk.jfr.FlightRecorderListener");
+        Object proxy = Proxy.newProxyInstance(listener.getClassLoader(), new Class<?>[]{listener},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object p, Method method, Object[] args) throws Throwable {
+                        if (method.getDeclaringClass() == Object.class) {
+                            return method.getName().equals("equals") ? p == args[0]
+                                    : method.getName().equals("hashCode") ? System.identityHashCode(p) : "FlightEvents";
+                        }
+                        recording = isRunning(recorder);
+                        return null;
+                    }
+                });
+        recorder.getMethod("addListener", listener).invoke(null, proxy);
+        recording = isRunning(recorder);
+    }
+
+    /**
+     * Tells whether the recorder has any recording running, without starting
+     * the recorder if it has not been
+     */
+    private static boolean isRunning(Class<?> recorder) throws ReflectiveOperationException {
+        if (!(Boolean) recorder.getMethod("isInitialized").invoke(null)) {
+            return false;
+        }
+        Object instance = recorder.getMethod("getFlightRecorder").invoke(null);
+        for (Object r : (List<?>) recorder.getMethod("getRecordings").invoke(instance)) {
+            if (r.getClass().getMethod("getState").invoke(r).toString().equals("RUNNING")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,137 @@
+package chess.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how long something took, in buckets that grow with the time, so
+ * percentiles can be read with an error of at most one part in
+ * {@code SUB_BUCKETS}. Recording a time allocates nothing and takes no lock,
+ * and any thread may record.
+ *
+ * @author Jurgen Aliaj
+ */
+public final class LatencyHistogram {
+
+    //each power of two is split into this many buckets
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray totals = new AtomicLongArray(2); // count, sum
+
+    /**
+     * Creates an empty histogram
+     *
+     * @param name what is timed, shown in the summary
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records a time
+     *
+     * @param nanos the time in nanoseconds, negative times count as 0
+     */
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(v));
+        totals.incrementAndGet(0);
+        totals.addAndGet(1, v);
+    }
+
+    /**
+     * Gets the number of times recorded
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return totals.get(0);
+    }
+
+    /**
+     * Gets the mean of the times recorded
+     *
+     * @return the mean in nanoseconds, 0 if there are none
+     */
+    public long getMean() {
+        long n = totals.get(0);
+        return n == 0 ? 0 : totals.get(1) / n;
+    }
+
+    /**
+     * Gets the time that a share of the times recorded are at most
+     *
+     * @param percentile from 0 to 100, ex 99 for the 99th percentile
+     * @return the upper end of the bucket holding it, in nanoseconds, 0 if
+     * there are no times
+     */
+    public long getPercentile(double percentile) {
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            n += counts.get(i);
+        }
+        long rank = (long) Math.ceil(n * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= Math.max(1, rank)) {
+                return upper(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Empties the histogram
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        totals.set(0, 0);
+        totals.set(1, 0);
+    }
+
+    /**
+     * Describes the histogram on one line, times in milliseconds
+     *
+     * @return the name, count, mean and percentiles
+     */
+    @Override
+    public String toString() {
+        return String.format("%-14s n=%-7d mean=%8.3f p50=%8.3f p90=%8.3f p99=%8.3f max=%8.3f",
+                name, getCount(), getMean() / 1e6, getPercentile(50) / 1e6, getPercentile(90) / 1e6,
+                getPercentile(99) / 1e6, getPercentile(100) / 1e6);
+    }
+
+    /**
+     * Finds the bucket of a time: values below {@code SUB_BUCKETS} get one
+     * each, above that the leading bit picks a power of two and the next
+     * bits the bucket within it
+     */
+    private static int bucket(long v) {
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (v >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Gets the largest time that falls in a bucket
+     */
+    private static long upper(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long low = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return low + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,64 @@
+package chess.metrics;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters kept by the rules engine, the search and the game service,
+ * published through JMX as {@code chess:type=Engine} once {@code register}
+ * has been called. The counters on hot paths are striped, so threads adding to
+ * them at once do not slow each other down.
+ *
+ * @author Jurgen Aliaj
+ */
+public final class Metrics {
+
+    /**
+     * calls to {@code Game.legalMoves()} that worked out a move list
+     */
+    public static final StripedCounter LEGAL_MOVE_GENERATIONS = new StripedCounter();
+    /**
+     * calls to {@code Piece.inCheck}
+     */
+    public static final StripedCounter CHECK_TESTS = new StripedCounter();
+    /**
+     * positions searched, added by each search after every depth
+     */
+    public static final StripedCounter NODES = new StripedCounter();
+    public static final StripedCounter TRANSPOSITION_PROBES = new StripedCounter();
+    public static final StripedCounter TRANSPOSITION_HITS = new StripedCounter();
+    /**
+     * nodes whose search stopped early because a move reached beta
+     */
+    public static final StripedCounter CUTOFFS = new StripedCounter();
+    /**
+     * games hosted by every {@code GameService}
+     */
+    public static final StripedCounter ACTIVE_SESSIONS = new StripedCounter();
+    /**
+     * games written and read in the binary save format
+     */
+    public static final StripedCounter SAVES = new StripedCounter();
+    public static final StripedCounter LOADS = new StripedCounter();
+
+    private Metrics() {
+    }
+
+    /**
+     * Publishes the counters through JMX, if they are not already. The
+     * counters are kept either way.
+     */
+    public static synchronized void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("chess:type=Engine");
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new EngineMetrics(), name);
+            }
+        } catch (JMException | SecurityException ex) {
+            System.err.println(ex);
+        }
+    }
+}
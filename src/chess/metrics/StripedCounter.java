@@ -0,0 +1,59 @@
+package chess.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A count that many threads can add to at once without fighting over one
+ * cache line. Each thread adds to one of several cells picked by its id, and
+ * reading the count adds up the cells, so a read made while threads are
+ * adding may miss what they have just added.
+ *
+ * @author Jurgen Aliaj
+ */
+public final class StripedCounter {
+
+    //cells are this many longs apart, so two never share a cache line
+    private static final int SPACING = 16;
+    private static final int STRIPES = Integer.highestOneBit(
+            Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * SPACING);
+
+    /**
+     * Adds one
+     */
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * Adds to the count
+     *
+     * @param n the amount, which may be negative
+     */
+    public void add(long n) {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        cells.addAndGet(stripe * SPACING, n);
+    }
+
+    /**
+     * Gets the count
+     *
+     * @return the sum of every cell
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * SPACING);
+        }
+        return sum;
+    }
+
+    /**
+     * Sets the count back to 0
+     */
+    public void reset() {
+        for (int i = 0; i < STRIPES; i++) {
+            cells.set(i * SPACING, 0);
+        }
+    }
+}
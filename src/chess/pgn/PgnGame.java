@@ -0,0 +1,92 @@
+package chess.pgn;
+
+import chess.game.Game;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A game as read from a PGN file: its tags, the moves of the main line in SAN
+ * and the result. Comments and variations are not kept.
+ *
+ * @author Jurgen Aliaj
+ */
+public class PgnGame {
+
+    private final long number;
+    private final Map<String, String> tags = new LinkedHashMap<>();
+    private final List<String> moves = new ArrayList<>(128);
+    private String result = "*";
+
+    /**
+     * Creates an empty game
+     *
+     * @param number the position of the game in its file, counting from 0
+     */
+    public PgnGame(long number) {
+        this.number = number;
+    }
+
+    /**
+     * Gets the position of the game in its file
+     *
+     * @return the number of games before it, used as the game's id
+     */
+    public long getNumber() {
+        return number;
+    }
+
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    /**
+     * Gets the value of a tag
+     *
+     * @param name the name of the tag, ex White or Event
+     * @return the value, or null if the game has no such tag
+     */
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    public List<String> getMoves() {
+        return moves;
+    }
+
+    /**
+     * Gets the result, one of 1-0, 0-1, 1/2-1/2 or * if the game is unfinished
+     *
+     * @return the result
+     */
+    public String getResult() {
+        return result;
+    }
+
+    void setResult(String result) {
+        this.result = result;
+    }
+
+    /**
+     * Plays the moves from the starting position, which is the normal one
+     * unless the game has a FEN tag
+     *
+     * @return the game after the last move
+     * @throws IllegalArgumentException if the FEN tag is not valid or a move
+     * is not legal
+     */
+    public Game replay() {
+        String fen = tags.get("FEN");
+        Game game = fen == null ? new Game() : Game.fromFen(fen);
+        for (int i = 0; i < moves.size(); i++) {
+            try {
+                game.makeMove(San.parse(game, moves.get(i)));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Game " + number + ", move " + (i / 2 + 1)
+                        + (i % 2 == 0 ? ". " : "... ") + ex.getMessage(), ex);
+            }
+        }
+        return game;
+    }
+}
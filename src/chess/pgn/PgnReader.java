@@ -0,0 +1,249 @@
+package chess.pgn;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads games one at a time from a PGN file of any size. The file is read
+ * through a fixed buffer and parsed byte by byte, so only the game being read
+ * is held in memory. Comments, variations, move numbers and NAGs are skipped;
+ * a game ends at its result or where the tags of the next game start.
+ *
+ * @author Jurgen Aliaj
+ */
+public class PgnReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private final InputStream in;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int pos, limit;
+    private byte[] text = new byte[64]; // the token being read
+    private int length;
+    private long games;
+    private boolean lineStart = true;
+
+    /**
+     * Creates a reader, the stream does not need to be buffered
+     *
+     * @param in the stream to read from
+     */
+    public PgnReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the next game
+     *
+     * @return the game, or null at the end of the stream
+     * @throws IOException if the stream cannot be read or a tag is not closed
+     */
+    public PgnGame next() throws IOException {
+        PgnGame game = new PgnGame(games);
+        boolean empty = true;
+        int c;
+        while ((c = skipSpace()) != -1) {
+            if (c == '[') {
+                if (!game.getMoves().isEmpty()) {
+                    pos--; // the tags of the next game, this one had no result
+                    break;
+                }
+                readTag(game);
+            } else if (c == '%' && lineStart) {
+                skipLine();
+            } else if (c == '{') {
+                skipTo('}');
+            } else if (c == ';') {
+                skipLine();
+            } else if (c == '(') {
+                skipVariation();
+            } else if (c == '$') {
+                readToken(c);
+            } else if (c == ')') {
+                lineStart = false; // a variation closed twice
+            } else {
+                readToken(c);
+                if (isResult()) {
+                    game.setResult(new String(text, 0, length, StandardCharsets.US_ASCII));
+                    empty = false;
+                    break;
+                }
+                String move = readMove();
+                if (move != null) {
+                    game.getMoves().add(move);
+                }
+            }
+            empty = false;
+        }
+        if (empty) {
+            return null;
+        }
+        games++;
+        return game;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Reads the next byte, -1 at the end of the stream
+     */
+    private int read() throws IOException {
+        if (pos == limit) {
+            limit = in.read(buf, 0, buf.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buf[pos++] & 0xFF;
+    }
+
+    /**
+     * Skips white space and returns the first byte after it, noting whether
+     * it starts a line
+     */
+    private int skipSpace() throws IOException {
+        int c = read();
+        boolean start = lineStart;
+        while (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+            if (c == '\n') {
+                start = true;
+            }
+            c = read();
+        }
+        lineStart = start;
+        return c;
+    }
+
+    private void skipLine() throws IOException {
+        int c;
+        while ((c = read()) != -1 && c != '\n') {
+        }
+        lineStart = true;
+    }
+
+    private void skipTo(int end) throws IOException {
+        int c;
+        while ((c = read()) != -1 && c != end) {
+        }
+        lineStart = false;
+    }
+
+    /**
+     * Skips a variation, which may hold comments and other variations
+     */
+    private void skipVariation() throws IOException {
+        int depth = 1;
+        int c;
+        while (depth > 0 && (c = read()) != -1) {
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '{') {
+                skipTo('}');
+            } else if (c == ';') {
+                skipLine();
+            }
+        }
+        lineStart = false;
+    }
+
+    /**
+     * Reads a tag pair, ex [White "Kasparov, Garry"], the '[' has been read
+     */
+    private void readTag(PgnGame game) throws IOException {
+        length = 0;
+        int c = skipSpace();
+        while (c != -1 && c != '"' && c != ']' && c > ' ') {
+            append(c);
+            c = read();
+        }
+        String name = new String(text, 0, length, StandardCharsets.US_ASCII);
+        while (c == ' ' || c == '\t') {
+            c = read();
+        }
+        if (c != '"') {
+            throw new IOException("Bad tag in game " + games + ": " + name);
+        }
+        length = 0;
+        while ((c = read()) != '"') {
+            if (c == -1 || c == '\n') {
+                throw new IOException("Unclosed tag in game " + games + ": " + name);
+            }
+            if (c == '\\') {
+                c = read();
+            }
+            append(c);
+        }
+        game.getTags().put(name, new String(text, 0, length, StandardCharsets.UTF_8));
+        skipTo(']');
+    }
+
+    /**
+     * Reads a token of movetext up to white space or the start of a comment
+     * or variation
+     */
+    private void readToken(int c) throws IOException {
+        length = 0;
+        while (c != -1 && c > ' ' && c != '{' && c != '(' && c != ')' && c != ';' && c != '[') {
+            append(c);
+            c = read();
+        }
+        if (c != -1) {
+            pos--; // leave the byte that ended the token to be read again
+        }
+        lineStart = false;
+    }
+
+    private void append(int c) {
+        if (length == text.length) {
+            text = Arrays.copyOf(text, length * 2);
+        }
+        text[length++] = (byte) c;
+    }
+
+    private boolean isResult() {
+        return is("1-0") || is("0-1") || is("1/2-1/2") || is("*");
+    }
+
+    private boolean is(String s) {
+        if (length != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (text[i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the move in the token just read, without any move number in front
+     * of it, ex "12.Nf3" gives Nf3 and "12..." gives null
+     */
+    private String readMove() {
+        int i = 0;
+        while (i < length && text[i] >= '0' && text[i] <= '9') {
+            i++;
+        }
+        int digits = i;
+        while (i < length && text[i] == '.') {
+            i++;
+        }
+        if (i == digits) {
+            i = 0; // no dots, so not a move number (castling may be written with zeros)
+        }
+        if (i == length || digits == length) {
+            return null;
+        }
+        return new String(text, i, length - i, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,174 @@
+package chess.pgn;
+
+import chess.game.Game;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays every game of a PGN file through the rules, on a pool of threads.
+ * The file is split into games on the calling thread while the pool checks
+ * the moves; the queue between them is bounded, so a file of any size is
+ * replayed in constant memory.
+ *
+ * @author Jurgen Aliaj
+ */
+public class PgnReplay {
+
+    /**
+     * Told about every game replayed. Called from the pool's threads, so it
+     * must be thread safe.
+     */
+    public interface Listener {
+
+        /**
+         * Called after a game has been replayed
+         *
+         * @param pgn the game as read from the file
+         * @param game the game after its last move
+         */
+        void replayed(PgnGame pgn, Game game);
+
+        /**
+         * Called when a game has an illegal move or a bad FEN tag
+         *
+         * @param pgn the game as read from the file
+         * @param ex what went wrong
+         */
+        void failed(PgnGame pgn, IllegalArgumentException ex);
+    }
+
+    private final int threads;
+    private final AtomicLong games = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong plies = new AtomicLong();
+
+    /**
+     * Creates a replay with one thread per processor
+     */
+    public PgnReplay() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a replay
+     *
+     * @param threads the number of threads that replay games
+     */
+    public PgnReplay(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Replays every game in a stream and waits for them to finish
+     *
+     * @param in the PGN to read, closed afterwards
+     * @param listener told about each game, may be null
+     * @throws IOException if the stream cannot be read
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void replay(InputStream in, final Listener listener) throws IOException, InterruptedException {
+        //when the queue is full the reading thread replays a game itself, which holds reading back
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * 64), new ThreadPoolExecutor.CallerRunsPolicy());
+        try (PgnReader reader = new PgnReader(in)) {
+            PgnGame pgn;
+            while ((pgn = reader.next()) != null) {
+                final PgnGame next = pgn;
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        replay(next, listener);
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void replay(PgnGame pgn, Listener listener) {
+        games.incrementAndGet();
+        Game game;
+        try {
+            game = pgn.replay();
+        } catch (IllegalArgumentException ex) {
+            failed.incrementAndGet();
+            if (listener != null) {
+                listener.failed(pgn, ex);
+            }
+            return;
+        }
+        plies.addAndGet(game.getPly());
+        if (listener != null) {
+            listener.replayed(pgn, game);
+        }
+    }
+
+    /**
+     * Gets the number of games replayed so far
+     *
+     * @return the number of games, including those that failed
+     */
+    public long getGames() {
+        return games.get();
+    }
+
+    /**
+     * Gets the number of games that had an illegal move
+     *
+     * @return the number of games that failed
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Gets the number of moves played in the games that succeeded
+     *
+     * @return the number of half moves
+     */
+    public long getPlies() {
+        return plies.get();
+    }
+
+    /**
+     * Replays a PGN file and prints the totals, ex
+     * {@code java chess.pgn.PgnReplay games.pgn 4}
+     *
+     * @param args the file and optionally the number of threads
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: PgnReplay file.pgn [threads]");
+            return;
+        }
+        PgnReplay replay = args.length > 1 ? new PgnReplay(Integer.parseInt(args[1])) : new PgnReplay();
+        long start = System.nanoTime();
+        try {
+            replay.replay(new FileInputStream(args[0]), new Listener() {
+                @Override
+                public void replayed(PgnGame pgn, Game game) {
+                }
+
+                @Override
+                public void failed(PgnGame pgn, IllegalArgumentException ex) {
+                    System.err.println(ex.getMessage());
+                }
+            });
+        } catch (IOException | InterruptedException ex) {
+            System.err.println(ex);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d games (%d failed), %d moves in %.1fs, %.0f games/s%n", replay.getGames(),
+                replay.getFailed(), replay.getPlies(), seconds, replay.getGames() / seconds);
+    }
+}
@@ -0,0 +1,146 @@
+package chess.pgn;
+
+import chess.game.Game;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes games as PGN, the seven standard tags first and the moves in SAN
+ * wrapped at 80 columns.
+ *
+ * @author Jurgen Aliaj
+ */
+public class PgnWriter implements Closeable {
+
+    private static final String[] ROSTER = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};
+    private static final int LINE_LENGTH = 79;
+    private static final long START_HASH = new Game().getHash();
+    private final Writer out;
+
+    /**
+     * Creates a writer that writes UTF-8
+     *
+     * @param out the stream to write to
+     */
+    public PgnWriter(OutputStream out) {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes a game. Tags of the seven tag roster that are missing are written
+     * as "?", and SetUp and FEN tags are added if the game did not start from
+     * the normal position.
+     *
+     * @param game the game
+     * @param tags the tags to write, may be empty
+     * @param result the result, one of 1-0, 0-1, 1/2-1/2 or *
+     * @throws IOException if the game cannot be written
+     */
+    public void write(Game game, Map<String, String> tags, String result) throws IOException {
+        Game replay = game.getStartingPosition();
+        for (int i = 0; i < ROSTER.length; i++) {
+            String value = tags.get(ROSTER[i]);
+            writeTag(ROSTER[i], i == ROSTER.length - 1 ? result : value == null ? "?" : value);
+        }
+        if (replay.getHash() != START_HASH || game.getStartPly() != 0) {
+            writeTag("SetUp", "1");
+            writeTag("FEN", replay.toFen());
+        }
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (!isRoster(tag.getKey()) && !tag.getKey().equals("SetUp") && !tag.getKey().equals("FEN")) {
+                writeTag(tag.getKey(), tag.getValue());
+            }
+        }
+        out.write('\n');
+        //moves, numbered before every white move and before the first move
+        int column = 0;
+        for (int i = 0; i < game.getPly(); i++) {
+            StringBuilder token = new StringBuilder(16);
+            int moveNumber = (game.getStartPly() + i) / 2 + 1;
+            if (replay.getCurrentTurn() == Game.WHITE) {
+                token.append(moveNumber).append(". ");
+            } else if (i == 0) {
+                token.append(moveNumber).append("... ");
+            }
+            int move = game.getMove(i);
+            token.append(San.toString(replay, move));
+            replay.makeMove(move);
+            column = writeToken(token, column);
+        }
+        writeToken(new StringBuilder(result), column);
+        out.write("\n\n");
+    }
+
+    /**
+     * Writes a game with only the result tag worked out from its status
+     *
+     * @param game the game
+     * @throws IOException if the game cannot be written
+     */
+    public void write(Game game) throws IOException {
+        write(game, new HashMap<String, String>(), resultOf(game));
+    }
+
+    /**
+     * Gets the PGN result of a game from its status
+     *
+     * @param game the game
+     * @return 1-0 or 0-1 after checkmate, 1/2-1/2 after a draw, * otherwise
+     */
+    public static String resultOf(Game game) {
+        switch (game.status()) {
+            case CHECKMATE:
+                return game.getCurrentTurn() == Game.WHITE ? "0-1" : "1-0";
+            case IN_PROGRESS:
+            case CHECK:
+                return "*";
+            default:
+                return "1/2-1/2";
+        }
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private int writeToken(CharSequence token, int column) throws IOException {
+        if (column > 0 && column + 1 + token.length() > LINE_LENGTH) {
+            out.write('\n');
+            column = 0;
+        } else if (column > 0) {
+            out.write(' ');
+            column++;
+        }
+        out.append(token);
+        return column + token.length();
+    }
+
+    private void writeTag(String name, String value) throws IOException {
+        out.write('[');
+        out.write(name);
+        out.write(" \"");
+        out.write(value.replace("\\", "\\\\").replace("\"", "\\\""));
+        out.write("\"]\n");
+    }
+
+    private static boolean isRoster(String name) {
+        for (int i = 0; i < ROSTER.length; i++) {
+            if (ROSTER[i].equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
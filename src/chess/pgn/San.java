@@ -0,0 +1,192 @@
+package chess.pgn;
+
+import chess.game.Game;
+import chess.game.GameStatus;
+import chess.game.Move;
+import chess.game.Piece;
+import chess.game.Position;
+
+/**
+ * Converts moves to and from standard algebraic notation (SAN), ex Nf3, exd5,
+ * O-O or e8=Q+. Only the pieces that could make a move are tried against the
+ * rules, so reading a move costs a handful of legality checks.
+ *
+ * @author Jurgen Aliaj
+ */
+public final class San {
+
+    private static final String PIECE_LETTERS = " PNBRQK";
+
+    private San() {
+    }
+
+    /**
+     * Finds the move a SAN string stands for in a game
+     *
+     * @param game the game, with the side to move about to play
+     * @param san the move, check marks and annotations such as !? are ignored
+     * @return the packed move
+     * @throws IllegalArgumentException if the String is not a legal move, or
+     * more than one move matches it
+     */
+    public static int parse(Game game, String san) {
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) != -1) {
+            end--;
+        }
+        String s = san.substring(0, end);
+        int turn = game.getCurrentTurn();
+        int row = turn == Game.WHITE ? 0 : 7;
+        if (s.equals("O-O") || s.equals("0-0")) {
+            return check(game, Move.encode(row, 4, row, 6, Move.NONE), san);
+        }
+        if (s.equals("O-O-O") || s.equals("0-0-0")) {
+            return check(game, Move.encode(row, 4, row, 2, Move.NONE), san);
+        }
+        int type = Piece.PAWN;
+        int i = 0;
+        if (end > 0 && "NBRQK".indexOf(s.charAt(0)) != -1) {
+            type = PIECE_LETTERS.indexOf(s.charAt(0));
+            i = 1;
+        }
+        //the promotion is at the end, with or without '='
+        int promotion = Move.NONE;
+        if (end > 2 && "NBRQ".indexOf(s.charAt(end - 1)) != -1) {
+            promotion = PIECE_LETTERS.indexOf(s.charAt(--end));
+            if (s.charAt(end - 1) == '=') {
+                end--;
+            }
+        }
+        //the last two characters left are the square moved to
+        if (end - i < 2 || !isFile(s.charAt(end - 2)) || !isRank(s.charAt(end - 1))) {
+            throw new IllegalArgumentException("Not a move: " + san);
+        }
+        int toCol = s.charAt(end - 2) - 'a';
+        int toRow = s.charAt(end - 1) - '1';
+        end -= 2;
+        if (end > i && s.charAt(end - 1) == 'x') {
+            end--;
+        }
+        //what is left is the file and/or rank of the piece that moves
+        int fromCol = -1, fromRow = -1;
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (isFile(c) && fromCol == -1 && fromRow == -1) {
+                fromCol = c - 'a';
+            } else if (isRank(c) && fromRow == -1) {
+                fromRow = c - '1';
+            } else {
+                throw new IllegalArgumentException("Not a move: " + san);
+            }
+        }
+        if (type == Piece.PAWN && fromCol == -1) {
+            fromCol = toCol; // a pawn only changes file when capturing, and then the file is given
+        }
+        if (promotion != Move.NONE && (type != Piece.PAWN || toRow != (turn == Game.WHITE ? 7 : 0))) {
+            throw new IllegalArgumentException("Not a move: " + san);
+        }
+        Position to = game.board[toRow][toCol];
+        int found = Move.NONE;
+        for (int r = 0; r < 8; r++) {
+            if (fromRow != -1 && r != fromRow) {
+                continue;
+            }
+            for (int c = 0; c < 8; c++) {
+                if (fromCol != -1 && c != fromCol) {
+                    continue;
+                }
+                Piece p = game.board[r][c].getPiece();
+                if (p != null && p.getColor() == turn && p.getType() == type && p.isValidMove(to)) {
+                    if (found != Move.NONE) {
+                        throw new IllegalArgumentException("Ambiguous move: " + san);
+                    }
+                    found = Move.encode(r, c, toRow, toCol, promotion);
+                }
+            }
+        }
+        if (found == Move.NONE) {
+            throw new IllegalArgumentException("Illegal move: " + san);
+        }
+        if (type == Piece.PAWN && promotion == Move.NONE && (toRow == 0 || toRow == 7)) {
+            throw new IllegalArgumentException("Missing promotion: " + san);
+        }
+        return found;
+    }
+
+    /**
+     * Writes a legal move in SAN, with the file or rank of the piece added
+     * when another piece of the same type could make the same move, and + or #
+     * when it gives check or mate
+     *
+     * @param game the game, with the side to move about to play
+     * @param move the packed move
+     * @return the move in SAN
+     */
+    public static String toString(Game game, int move) {
+        int fromRow = Move.getFromRow(move), fromCol = Move.getFromCol(move);
+        int toRow = Move.getToRow(move), toCol = Move.getToCol(move);
+        Piece piece = game.board[fromRow][fromCol].getPiece();
+        Position to = game.board[toRow][toCol];
+        StringBuilder sb = new StringBuilder(7);
+        if (piece.getType() == Piece.KING && Math.abs(toCol - fromCol) == 2) {
+            sb.append(toCol == 6 ? "O-O" : "O-O-O");
+        } else if (piece.getType() == Piece.PAWN) {
+            if (fromCol != toCol) {
+                sb.append((char) ('a' + fromCol)).append('x');
+            }
+            sb.append((char) ('a' + toCol)).append((char) ('1' + toRow));
+            if (toRow == 0 || toRow == 7) {
+                int promotion = Move.getPromotion(move) == Move.NONE ? Piece.QUEEN : Move.getPromotion(move);
+                sb.append('=').append(PIECE_LETTERS.charAt(promotion));
+            }
+        } else {
+            sb.append(PIECE_LETTERS.charAt(piece.getType()));
+            //look for other pieces of the same type that can reach the square
+            boolean other = false, sameRow = false, sameCol = false;
+            for (int r = 0; r < 8; r++) {
+                for (int c = 0; c < 8; c++) {
+                    Piece p = game.board[r][c].getPiece();
+                    if (p != null && p != piece && p.getColor() == piece.getColor()
+                            && p.getType() == piece.getType() && p.isValidMove(to)) {
+                        other = true;
+                        sameRow |= r == fromRow;
+                        sameCol |= c == fromCol;
+                    }
+                }
+            }
+            if (other && (!sameCol || sameRow)) {
+                sb.append((char) ('a' + fromCol));
+            }
+            if (other && sameCol) {
+                sb.append((char) ('1' + fromRow));
+            }
+            if (to.isOccupied()) {
+                sb.append('x');
+            }
+            sb.append((char) ('a' + toCol)).append((char) ('1' + toRow));
+        }
+        Game after = game.copy();
+        after.makeMove(move);
+        if (after.isInCheck()) {
+            sb.append(after.status() == GameStatus.CHECKMATE ? '#' : '+');
+        }
+        return sb.toString();
+    }
+
+    private static int check(Game game, int move, String san) {
+        Piece king = game.board[Move.getFromRow(move)][Move.getFromCol(move)].getPiece();
+        if (king == null || king.getType() != Piece.KING || king.getColor() != game.getCurrentTurn()
+                || !king.isValidMove(game.board[Move.getToRow(move)][Move.getToCol(move)])) {
+            throw new IllegalArgumentException("Illegal move: " + san);
+        }
+        return move;
+    }
+
+    private static boolean isFile(char c) {
+        return c >= 'a' && c <= 'h';
+    }
+
+    private static boolean isRank(char c) {
+        return c >= '1' && c <= '8';
+    }
+}
@@ -0,0 +1,352 @@
+package chess.server;
+
+import chess.game.GameStatus;
+import chess.metrics.Metrics;
+import chess.service.GameService;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Serves the games of a {@code GameService} over TCP, with the messages of
+ * {@code Protocol}. One thread runs a selector over every connection. The
+ * replies and notifications of a pass over the ready connections are
+ * gathered per connection and written together at the end of the pass, so
+ * a busy game costs its subscribers one write per pass and not one per
+ * move. A client that lets more than {@code MAX_PENDING} bytes wait for it
+ * is disconnected.
+ *
+ * @author Jurgen Aliaj
+ */
+public class GameServer implements Closeable {
+
+    /**
+     * the most bytes kept waiting for a client that does not read them
+     */
+    public static final int MAX_PENDING = 1 << 20;
+    private final GameService service;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Map<Long, List<Connection>> subscribers = new HashMap<>();
+    private final Set<Connection> dirty = new HashSet<>();
+    private Thread thread;
+
+    /**
+     * A client, with what it has sent but not yet been handled and what is
+     * waiting to be written to it
+     */
+    private static final class Connection {
+
+        final SocketChannel channel;
+        final SelectionKey key;
+        ByteBuffer in = ByteBuffer.allocate(Protocol.MAX_FRAME + 4);
+        ByteBuffer out = ByteBuffer.allocate(1024);
+        final List<Long> subscriptions = new ArrayList<>();
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        /**
+         * Makes room for a frame of up to n bytes after its length
+         */
+        ByteBuffer frame(int n) {
+            if (out.remaining() < n + 4) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + n + 4));
+                out.flip();
+                bigger.put(out);
+                out = bigger;
+            }
+            return out;
+        }
+    }
+
+    /**
+     * Opens a server, which does not accept connections until started
+     *
+     * @param service the games served
+     * @param port the port to listen on, 0 for any free one
+     * @throws IOException if the port cannot be opened
+     */
+    public GameServer(GameService service, int port) throws IOException {
+        this.service = service;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.configureBlocking(false);
+        server.bind(new InetSocketAddress(port));
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Gets the port the server listens on
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Starts serving on a thread of its own
+     */
+    public synchronized void start() {
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve();
+            }
+        }, "game-server");
+        thread.start();
+    }
+
+    /**
+     * Stops serving and closes every connection
+     *
+     * @throws IOException if the server cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        Thread t;
+        synchronized (this) {
+            t = thread;
+            thread = null;
+        }
+        if (t != null) {
+            t.interrupt();
+            selector.wakeup();
+            try {
+                t.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    /**
+     * The event loop, run until the thread is interrupted
+     */
+    private void serve() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection c = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(c);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            dirty.add(c);
+                        }
+                    } catch (IOException ex) {
+                        disconnect(c);
+                    }
+                }
+                //everything gathered in this pass goes out in one write per connection
+                for (Connection c : dirty) {
+                    try {
+                        write(c);
+                        if (c.out.position() > MAX_PENDING) {
+                            disconnect(c); // too slow to keep up
+                        }
+                    } catch (IOException ex) {
+                        disconnect(c);
+                    }
+                }
+                dirty.clear();
+            } catch (IOException ex) {
+                System.err.println(ex);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+    }
+
+    /**
+     * Reads what has arrived and handles every whole frame in it
+     */
+    private void read(Connection c) throws IOException {
+        if (c.channel.read(c.in) < 0) {
+            disconnect(c);
+            return;
+        }
+        c.in.flip();
+        while (c.in.remaining() >= 4) {
+            int length = c.in.getInt(c.in.position());
+            if (length < 1 || length > Protocol.MAX_FRAME) {
+                throw new IOException("Bad frame length " + length);
+            }
+            if (c.in.remaining() < 4 + length) {
+                break;
+            }
+            c.in.getInt();
+            int end = c.in.position() + length;
+            byte type = c.in.get(c.in.position());
+            try {
+                //the fields are read by type, so a frame of the wrong length
+                //would be read into the next one
+                if (length != Protocol.requestLength(type)) {
+                    throw new IllegalArgumentException(Protocol.requestLength(type) == 0
+                            ? "Unknown message " + type : "Bad length " + length + " for message " + type);
+                }
+                handle(c, c.in.get());
+            } catch (RuntimeException ex) {
+                error(c, ex.getMessage() == null ? ex.toString() : ex.getMessage());
+            }
+            c.in.position(end);
+        }
+        c.in.compact();
+    }
+
+    private void handle(Connection c, byte type) {
+        ByteBuffer in = c.in;
+        long id;
+        switch (type) {
+            case Protocol.CREATE:
+                id = service.create();
+                c.frame(9).putInt(9).put(Protocol.CREATED).putLong(id);
+                break;
+            case Protocol.MOVE:
+                id = in.getLong();
+                int move = in.getInt();
+                GameStatus status = service.makeMove(id, move);
+                c.frame(10).putInt(10).put(Protocol.MOVED).putLong(id).put((byte) status.ordinal());
+                List<Connection> list = subscribers.get(id);
+                if (list != null) {
+                    for (Connection s : list) {
+                        s.frame(13).putInt(13).put(Protocol.PLAYED).putLong(id).putInt(move);
+                        dirty.add(s);
+                    }
+                }
+                break;
+            case Protocol.STATE:
+                id = in.getLong();
+                String fen = service.get(id).toFen();
+                ByteBuffer out = c.frame(11 + fen.length() * 3);
+                int start = out.position();
+                out.putInt(0).put(Protocol.POSITION).putLong(id);
+                Protocol.putString(out, fen);
+                out.putInt(start, out.position() - start - 4);
+                break;
+            case Protocol.SUBSCRIBE:
+                id = in.getLong();
+                service.get(id); // fails if there is no such game
+                if (!c.subscriptions.contains(id)) {
+                    List<Connection> l = subscribers.get(id);
+                    if (l == null) {
+                        l = new ArrayList<>();
+                        subscribers.put(id, l);
+                    }
+                    l.add(c);
+                    c.subscriptions.add(id);
+                }
+                c.frame(9).putInt(9).put(Protocol.SUBSCRIBED).putLong(id);
+                break;
+            case Protocol.CLOSE:
+                id = in.getLong();
+                if (!service.remove(id)) {
+                    throw new IllegalArgumentException("No game " + id);
+                }
+                List<Connection> watching = subscribers.remove(id);
+                if (watching != null) {
+                    for (Connection s : watching) {
+                        s.subscriptions.remove(Long.valueOf(id));
+                    }
+                }
+                c.frame(9).putInt(9).put(Protocol.CLOSED).putLong(id);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown message " + type);
+        }
+        dirty.add(c);
+    }
+
+    private void error(Connection c, String message) {
+        ByteBuffer out = c.frame(3 + message.length() * 3);
+        int start = out.position();
+        out.putInt(0).put(Protocol.ERROR);
+        Protocol.putString(out, message);
+        out.putInt(start, out.position() - start - 4);
+        dirty.add(c);
+    }
+
+    /**
+     * Writes what is waiting, asking to be told when the rest can go if the
+     * socket is full
+     */
+    private void write(Connection c) throws IOException {
+        if (!c.key.isValid()) {
+            return;
+        }
+        c.out.flip();
+        c.channel.write(c.out);
+        c.out.compact();
+        c.key.interestOps(c.out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    private void disconnect(Connection c) {
+        for (long id : c.subscriptions) {
+            List<Connection> list = subscribers.get(id);
+            list.remove(c);
+            if (list.isEmpty()) {
+                subscribers.remove(id);
+            }
+        }
+        c.subscriptions.clear();
+        c.key.cancel();
+        try {
+            c.channel.close();
+        } catch (IOException ex) {
+            System.err.println(ex);
+        }
+    }
+
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7878;
+        Metrics.register();
+        try {
+            GameService service = new GameService(256, 60000);
+            GameServer server = new GameServer(service, port);
+            server.start();
+            System.out.println("Serving games on port " + server.getPort());
+        } catch (IOException ex) {
+            System.err.println(ex);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package chess.server;
+
+import chess.game.Game;
+import chess.game.GameStatus;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Plays random games against a {@code GameServer} from several connections at
+ * once and reports how many moves a second the server took and how long
+ * they took to be answered. Each connection waits for the answer to one move
+ * before sending the next; picking the move is not counted in its time. Games
+ * are closed when they end, so the server does not keep them.
+ *
+ * @author Jurgen Aliaj
+ */
+public class LoadClient {
+
+    private final InetSocketAddress address;
+    private final int connections;
+    private final long millis;
+
+    /**
+     * Creates a client
+     *
+     * @param address where the server is
+     * @param connections how many connections play at once
+     * @param millis how long to play for
+     */
+    public LoadClient(InetSocketAddress address, int connections, long millis) {
+        this.address = address;
+        this.connections = connections;
+        this.millis = millis;
+    }
+
+    /**
+     * Plays until the time is up and prints the results
+     *
+     * @throws Exception if a connection fails
+     */
+    public void run() throws Exception {
+        final long end = System.currentTimeMillis() + millis;
+        final long[][] latencies = new long[connections][];
+        final Exception[] failures = new Exception[connections];
+        Thread[] threads = new Thread[connections];
+        long start = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            final int n = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        latencies[n] = play(end, new Random(n));
+                    } catch (Exception ex) {
+                        failures[n] = ex;
+                    }
+                }
+            }, "load-" + i);
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        for (Exception ex : failures) {
+            if (ex != null) {
+                throw ex;
+            }
+        }
+        int total = 0;
+        for (long[] l : latencies) {
+            total += l.length;
+        }
+        long[] all = new long[total];
+        int k = 0;
+        for (long[] l : latencies) {
+            System.arraycopy(l, 0, all, k, l.length);
+            k += l.length;
+        }
+        Arrays.sort(all);
+        System.out.printf("%d moves in %.1fs from %d connections: %.0f moves/s%n",
+                total, seconds, connections, total / seconds);
+        if (total > 0) {
+            System.out.printf("latency p50 %.1fus, p99 %.1fus, max %.1fus%n",
+                    all[total / 2] / 1e3, all[(int) (total * 0.99)] / 1e3, all[total - 1] / 1e3);
+        }
+    }
+
+    /**
+     * Plays games on one connection until the time is up
+     *
+     * @return the time taken by each move, in nanoseconds
+     */
+    private long[] play(long end, Random random) throws IOException {
+        long[] latencies = new long[1024];
+        int count = 0;
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            channel.socket().setTcpNoDelay(true);
+            ByteBuffer out = ByteBuffer.allocate(64);
+            ByteBuffer in = ByteBuffer.allocate(Protocol.MAX_FRAME + 4);
+            long id = 0;
+            Game game = null;
+            while (System.currentTimeMillis() < end) {
+                if (game == null) {
+                    out.clear();
+                    out.putInt(1).put(Protocol.CREATE);
+                    id = call(channel, out, in, Protocol.CREATED).getLong();
+                    game = new Game();
+                }
+                int[] moves = game.legalMoves();
+                int move = moves[random.nextInt(moves.length)];
+                game.makeMove(move);
+                out.clear();
+                out.putInt(13).put(Protocol.MOVE).putLong(id).putInt(move);
+                long t = System.nanoTime();
+                ByteBuffer reply = call(channel, out, in, Protocol.MOVED);
+                if (count == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, count * 2);
+                }
+                latencies[count++] = System.nanoTime() - t;
+                reply.getLong();
+                GameStatus status = GameStatus.values()[reply.get()];
+                if (status != GameStatus.IN_PROGRESS && status != GameStatus.CHECK) {
+                    close(channel, out, in, id);
+                    game = null; // the game is over, start another
+                }
+            }
+            if (game != null) {
+                close(channel, out, in, id);
+            }
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    /**
+     * Asks the server to stop hosting a game
+     */
+    private static void close(SocketChannel channel, ByteBuffer out, ByteBuffer in, long id) throws IOException {
+        out.clear();
+        out.putInt(9).put(Protocol.CLOSE).putLong(id);
+        call(channel, out, in, Protocol.CLOSED);
+    }
+
+    /**
+     * Sends a request and reads the reply
+     *
+     * @return the reply, positioned after its type
+     */
+    private static ByteBuffer call(SocketChannel channel, ByteBuffer out, ByteBuffer in, byte expected) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        in.clear();
+        in.limit(4);
+        readFully(channel, in);
+        int length = in.getInt(0);
+        in.limit(4 + length);
+        readFully(channel, in);
+        in.position(4);
+        byte type = in.get();
+        if (type == Protocol.ERROR) {
+            throw new IOException(Protocol.getString(in));
+        } else if (type != expected) {
+            throw new IOException("Unexpected reply " + type);
+        }
+        return in;
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer in) throws IOException {
+        while (in.hasRemaining()) {
+            if (channel.read(in) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /**
+     * Runs the client, ex {@code LoadClient localhost 7878 16 10} for 16
+     * connections for 10 seconds
+     *
+     * @param args host, port, connections and seconds
+     */
+    public static void main(String[] args) {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7878;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        try {
+            new LoadClient(new InetSocketAddress(host, port), connections, seconds * 1000L).run();
+        } catch (Exception ex) {
+            System.err.println(ex);
+        }
+    }
+}
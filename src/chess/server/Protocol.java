@@ -0,0 +1,98 @@
+package chess.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The messages of the game server. Every message is a frame of an int
+ * giving the length of the rest, a type byte and the fields of that type, in
+ * big-endian order. Strings are an unsigned short length and UTF-8 bytes.
+ *
+ * <pre>
+ * requests               fields
+ *   CREATE       1       (none)
+ *   MOVE         2       game long, move int (packed as by Move.encode)
+ *   STATE        3       game long
+ *   SUBSCRIBE    4       game long
+ *   CLOSE        5       game long, ends the game and its subscriptions
+ * replies, in the order of the requests
+ *   CREATED    -127      game long
+ *   MOVED      -126      game long, status byte (GameStatus ordinal)
+ *   POSITION   -125      game long, fen string
+ *   SUBSCRIBED -124      game long
+ *   CLOSED     -122      game long
+ *   ERROR        -1      message string
+ * notifications, sent to subscribers after each move
+ *   PLAYED     -123      game long, move int
+ * </pre>
+ *
+ * @author Jurgen Aliaj
+ */
+public final class Protocol {
+
+    public static final byte CREATE = 1;
+    public static final byte MOVE = 2;
+    public static final byte STATE = 3;
+    public static final byte SUBSCRIBE = 4;
+    public static final byte CLOSE = 5;
+    public static final byte CREATED = -127;
+    public static final byte MOVED = -126;
+    public static final byte POSITION = -125;
+    public static final byte SUBSCRIBED = -124;
+    public static final byte PLAYED = -123;
+    public static final byte CLOSED = -122;
+    public static final byte ERROR = -1;
+    /**
+     * the longest frame accepted, not counting the length
+     */
+    public static final int MAX_FRAME = 4096;
+
+    private Protocol() {
+    }
+
+    /**
+     * Gets the length a request frame must have
+     *
+     * @param type the type of the request
+     * @return the length not counting the length itself, 0 if the type is
+     * not a request
+     */
+    public static int requestLength(byte type) {
+        switch (type) {
+            case CREATE:
+                return 1;
+            case MOVE:
+                return 13;
+            case STATE:
+            case SUBSCRIBE:
+            case CLOSE:
+                return 9;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Writes a string as an unsigned short length and UTF-8 bytes
+     *
+     * @param buffer where to write it
+     * @param s the string
+     */
+    public static void putString(ByteBuffer buffer, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Reads a string written by {@code putString}
+     *
+     * @param buffer where to read it from
+     * @return the string
+     */
+    public static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,253 @@
+package chess.service;
+
+import chess.game.Game;
+import chess.game.GameReader;
+import chess.game.GameStatus;
+import chess.game.GameWriter;
+import chess.metrics.FlightEvents;
+import chess.metrics.Metrics;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hosts many independent games in one process, without a user interface.
+ * Moves to the same game are applied one at a time under a lock shared by a
+ * stripe of games, so a busy game does not hold up the others and no thread
+ * is needed per game. Games left alone for a while are written to a few
+ * bytes in the save format and read back on their next move.
+ *
+ * @author Jurgen Aliaj
+ */
+public class GameService implements Closeable {
+
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final Object[] locks;
+    private final int mask;
+    private final long idleMillis;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final ScheduledExecutorService evictor;
+
+    /**
+     * A hosted game, either in memory or saved as bytes
+     */
+    private static final class Session {
+
+        Game game;
+        byte[] saved;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        Session(Game game) {
+            this.game = game;
+        }
+    }
+
+    /**
+     * Creates a service that evicts games idle for longer than a given time
+     *
+     * @param stripes the number of locks shared by the games, rounded up to
+     * a power of two
+     * @param idleMillis how long a game is kept in memory after its last
+     * move, 0 to never evict
+     */
+    public GameService(int stripes, long idleMillis) {
+        int n = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new Object[n];
+        for (int i = 0; i < n; i++) {
+            locks[i] = new Object();
+        }
+        mask = n - 1;
+        this.idleMillis = idleMillis;
+        if (idleMillis > 0) {
+            evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "game-evictor");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            long period = Math.max(1, idleMillis / 2);
+            evictor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    evictIdle();
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            evictor = null;
+        }
+    }
+
+    /**
+     * Starts a game from the normal starting position
+     *
+     * @return the id of the new game
+     */
+    public long create() {
+        return create(new Game());
+    }
+
+    /**
+     * Starts hosting a game
+     *
+     * @param game the game, which the caller must not use afterwards
+     * @return the id of the game
+     */
+    public long create(Game game) {
+        long id = nextId.getAndIncrement();
+        sessions.put(id, new Session(game));
+        Metrics.ACTIVE_SESSIONS.increment();
+        return id;
+    }
+
+    /**
+     * Plays a move in a game
+     *
+     * @param id the id of the game
+     * @param move the move, packed as by {@code Move.encode}
+     * @return the state of the game after the move
+     * @throws IllegalArgumentException if there is no such game or the move
+     * is not legal
+     */
+    public GameStatus makeMove(long id, int move) {
+        Session s = session(id);
+        synchronized (lock(id)) {
+            Game game = load(s);
+            Object event = FlightEvents.start(FlightEvents.Type.MOVE);
+            game.makeMove(move);
+            FlightEvents.move(event, game.getHash(), move);
+            s.lastUsed = System.currentTimeMillis();
+            return game.status();
+        }
+    }
+
+    /**
+     * Gets a copy of a game, which can be read while moves are being made
+     *
+     * @param id the id of the game
+     * @return the copy
+     * @throws IllegalArgumentException if there is no such game
+     */
+    public Game get(long id) {
+        Session s = session(id);
+        synchronized (lock(id)) {
+            return load(s).copy();
+        }
+    }
+
+    /**
+     * Stops hosting a game
+     *
+     * @param id the id of the game
+     * @return whether the game existed
+     */
+    public boolean remove(long id) {
+        if (sessions.remove(id) == null) {
+            return false;
+        }
+        Metrics.ACTIVE_SESSIONS.add(-1);
+        return true;
+    }
+
+    /**
+     * Gets the number of games hosted
+     *
+     * @return the number of games, in memory or saved
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Gets the number of games kept in memory
+     *
+     * @return the number of games not evicted
+     */
+    public int getResident() {
+        int n = 0;
+        for (Session s : sessions.values()) {
+            if (s.game != null) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Saves the games idle for longer than the eviction time as bytes and
+     * lets go of them. Called on a timer, but can be called at any time.
+     *
+     * @return the number of games evicted
+     */
+    public int evictIdle() {
+        long oldest = System.currentTimeMillis() - idleMillis;
+        int n = 0;
+        for (Map.Entry<Long, Session> e : sessions.entrySet()) {
+            Session s = e.getValue();
+            if (s.lastUsed >= oldest || s.game == null) {
+                continue;
+            }
+            synchronized (lock(e.getKey())) {
+                //checked again, a move may have come in meanwhile
+                if (s.game != null && s.lastUsed < oldest) {
+                    try {
+                        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 2 * s.game.getPly());
+                        GameWriter writer = new GameWriter(bytes);
+                        writer.write(s.game);
+                        writer.close();
+                        s.saved = bytes.toByteArray();
+                        s.game = null;
+                        n++;
+                    } catch (IOException ex) {
+                        System.err.println(ex);
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public void close() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+    }
+
+    private Session session(long id) {
+        Session s = sessions.get(id);
+        if (s == null) {
+            throw new IllegalArgumentException("No game " + id);
+        }
+        return s;
+    }
+
+    private Object lock(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return locks[(int) (h >>> 32) & mask];
+    }
+
+    /**
+     * Reads an evicted game back, the lock of the game must be held
+     */
+    private static Game load(Session s) {
+        if (s.game == null) {
+            try {
+                s.game = new GameReader(new ByteArrayInputStream(s.saved)).read();
+                s.saved = null;
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        return s.game;
+    }
+}
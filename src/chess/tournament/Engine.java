@@ -0,0 +1,46 @@
+package chess.tournament;
+
+import chess.game.Game;
+
+/**
+ * A player in a tournament. An engine is used by one thread at a time, for
+ * one game after another.
+ *
+ * @author Jurgen Aliaj
+ */
+public interface Engine {
+
+    /**
+     * Makes engines, one for each thread that plays games
+     */
+    interface Factory {
+
+        /**
+         * Makes a new engine that shares nothing with the others
+         *
+         * @return the engine
+         */
+        Engine create();
+    }
+
+    /**
+     * Gets the name written to the PGN and the summary
+     *
+     * @return the name
+     */
+    String getName();
+
+    /**
+     * Forgets what was learnt in the last game
+     */
+    void newGame();
+
+    /**
+     * Picks a move, leaving the game as it was
+     *
+     * @param game the game, which has a legal move
+     * @param millis the time to take
+     * @return the move, packed as by {@code Move.encode}
+     */
+    int think(Game game, long millis);
+}
@@ -0,0 +1,82 @@
+package chess.tournament;
+
+import chess.engine.Search;
+import chess.engine.TranspositionTable;
+import chess.game.Game;
+
+/**
+ * The engine of this program, with a transposition table of its own
+ *
+ * @author Jurgen Aliaj
+ */
+public class SearchEngine implements Engine {
+
+    private final String name;
+    private final TranspositionTable table;
+    private final int maxDepth;
+
+    /**
+     * Creates an engine
+     *
+     * @param name the name
+     * @param megabytes the size of the transposition table
+     * @param maxDepth the depth to stop at if time is left
+     */
+    public SearchEngine(String name, int megabytes, int maxDepth) {
+        this.name = name;
+        this.table = new TranspositionTable(megabytes);
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Makes engines set up alike
+     *
+     * @param name the name
+     * @param megabytes the size of each transposition table
+     * @param maxDepth the depth to stop at if time is left
+     * @return the factory
+     */
+    public static Engine.Factory factory(final String name, final int megabytes, final int maxDepth) {
+        return new Engine.Factory() {
+            @Override
+            public Engine create() {
+                return new SearchEngine(name, megabytes, maxDepth);
+            }
+        };
+    }
+
+    /**
+     * Reads an engine from name:megabytes:depth, ex "base:16:64", where the
+     * last two may be left out
+     *
+     * @param spec the description
+     * @return a factory for the engine
+     * @throws IllegalArgumentException if the description cannot be read
+     */
+    public static Engine.Factory parse(String spec) {
+        String[] parts = spec.split(":");
+        try {
+            int megabytes = parts.length > 1 ? Integer.parseInt(parts[1]) : 16;
+            int depth = parts.length > 2 ? Integer.parseInt(parts[2]) : Search.MAX_DEPTH;
+            return factory(parts[0], megabytes, depth);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Bad engine: " + spec);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void newGame() {
+        table.clear();
+    }
+
+    @Override
+    public int think(Game game, long millis) {
+        //a search that has been stopped stays stopped, so one is made per move
+        return new Search(table).search(game, maxDepth, millis, null).getMove();
+    }
+}
@@ -0,0 +1,153 @@
+package chess.tournament;
+
+/**
+ * A sequential probability ratio test between two Elo differences, so a
+ * match can stop as soon as the games played tell them apart. The
+ * log-likelihood ratio uses the normal approximation to the score of wins,
+ * draws and losses, as most engine testing frameworks do.
+ *
+ * @author Jurgen Aliaj
+ */
+public final class Sprt {
+
+    /**
+     * What the games played so far say
+     */
+    public enum Decision {
+        /**
+         * the difference is at least elo1
+         */
+        ACCEPT,
+        /**
+         * the difference is at most elo0
+         */
+        REJECT,
+        /**
+         * more games are needed
+         */
+        CONTINUE
+    }
+
+    private final double elo0, elo1;
+    private final double lower, upper;
+
+    /**
+     * Creates a test
+     *
+     * @param elo0 the difference of the null hypothesis, ex 0
+     * @param elo1 the difference of the alternative, ex 5
+     * @param alpha the chance of accepting when elo0 holds
+     * @param beta the chance of rejecting when elo1 holds
+     */
+    public Sprt(double elo0, double elo1, double alpha, double beta) {
+        if (elo1 <= elo0 || alpha <= 0 || alpha >= 1 || beta <= 0 || beta >= 1) {
+            throw new IllegalArgumentException("Bad SPRT bounds");
+        }
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        lower = Math.log(beta / (1 - alpha));
+        upper = Math.log((1 - beta) / alpha);
+    }
+
+    public double getLowerBound() {
+        return lower;
+    }
+
+    public double getUpperBound() {
+        return upper;
+    }
+
+    /**
+     * Works out the log-likelihood ratio of elo1 against elo0
+     *
+     * @param wins the wins of the first engine
+     * @param draws the draws
+     * @param losses the losses of the first engine
+     * @return the ratio, 0 before any game
+     */
+    public double llr(long wins, long draws, long losses) {
+        long n = wins + draws + losses;
+        if (n == 0) {
+            return 0;
+        }
+        //half a game of each kind is added so that a one-sided run of
+        //results does not give a variance of 0
+        double w = wins + 0.5, d = draws + 0.5, l = losses + 0.5, total = n + 1.5;
+        double s = (w + d / 2) / total;
+        double variance = (w * (1 - s) * (1 - s) + d * (0.5 - s) * (0.5 - s) + l * s * s) / total;
+        double s0 = expected(elo0), s1 = expected(elo1);
+        return n * (s1 - s0) * (2 * s - s0 - s1) / (2 * variance);
+    }
+
+    /**
+     * Decides whether the test is over
+     *
+     * @param wins the wins of the first engine
+     * @param draws the draws
+     * @param losses the losses of the first engine
+     * @return the decision
+     */
+    public Decision decide(long wins, long draws, long losses) {
+        double llr = llr(wins, draws, losses);
+        return llr >= upper ? Decision.ACCEPT : llr <= lower ? Decision.REJECT : Decision.CONTINUE;
+    }
+
+    /**
+     * Gets the Elo difference of the first engine
+     *
+     * @param wins the wins of the first engine
+     * @param draws the draws
+     * @param losses the losses of the first engine
+     * @return the difference, infinite if every game was won or lost
+     */
+    public static double elo(long wins, long draws, long losses) {
+        return elo(score(wins, draws, losses));
+    }
+
+    /**
+     * Gets half the width of the 95% confidence interval of the Elo
+     * difference
+     *
+     * @param wins the wins of the first engine
+     * @param draws the draws
+     * @param losses the losses of the first engine
+     * @return the margin, NaN if it cannot be worked out
+     */
+    public static double eloMargin(long wins, long draws, long losses) {
+        long n = wins + draws + losses;
+        if (n == 0) {
+            return Double.NaN;
+        }
+        double s = score(wins, draws, losses);
+        double delta = 1.96 * Math.sqrt(variance(wins, draws, losses) / n);
+        return (elo(Math.min(s + delta, 1)) - elo(Math.max(s - delta, 0))) / 2;
+    }
+
+    /**
+     * Gets the share of the points won by the first engine
+     */
+    static double score(long wins, long draws, long losses) {
+        long n = wins + draws + losses;
+        return n == 0 ? 0.5 : (wins + draws / 2.0) / n;
+    }
+
+    /**
+     * Gets the variance of the points of one game
+     */
+    private static double variance(long wins, long draws, long losses) {
+        long n = wins + draws + losses;
+        if (n == 0) {
+            return 0;
+        }
+        double s = score(wins, draws, losses);
+        return (wins * (1 - s) * (1 - s) + draws * (0.5 - s) * (0.5 - s) + losses * s * s) / n;
+    }
+
+    private static double expected(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    private static double elo(double score) {
+        return -400 * Math.log10(1 / score - 1);
+    }
+}
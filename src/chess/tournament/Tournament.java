@@ -0,0 +1,453 @@
+package chess.tournament;
+
+import chess.db.OpeningBook;
+import chess.endgame.Bitbase;
+import chess.game.Game;
+import chess.game.GameStatus;
+import chess.game.Move;
+import chess.metrics.FlightEvents;
+import chess.metrics.Metrics;
+import chess.pgn.PgnWriter;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays two engines against each other without a user interface, one game
+ * per thread, to tell whether a change to the search or the evaluation is
+ * an improvement. Each opening is played twice with the colors swapped.
+ * Every thread has its own pair of engines, so games share nothing but the
+ * tally. With a {@code Sprt} the match stops as soon as it is decided, and
+ * the games still being played are dropped.
+ *
+ * @author Jurgen Aliaj
+ */
+public class Tournament {
+
+    private static final int REPORT_EVERY = 100;
+    private final Engine.Factory first, second;
+    private final List<Game> openings;
+    private final long baseMillis, incMillis;
+    private final String timeControl;
+    private final ThreadLocal<Engine[]> engines;
+    private final List<Engine> created = new ArrayList<>();
+    private Sprt sprt;
+    private PgnWriter pgn;
+    private int maxPlies = 400;
+    private long wins, draws, losses, forfeits;
+    private Sprt.Decision decision = Sprt.Decision.CONTINUE;
+    private volatile boolean stopped;
+
+    /**
+     * Creates a match
+     *
+     * @param first the engine whose results are counted
+     * @param second its opponent
+     * @param openings the positions the games start from, each played twice,
+     * may be empty for the normal starting position
+     * @param baseMillis the time each side has for the game
+     * @param incMillis the time added after each move
+     */
+    public Tournament(Engine.Factory first, Engine.Factory second, List<Game> openings,
+            long baseMillis, long incMillis) {
+        this.first = first;
+        this.second = second;
+        this.openings = openings.isEmpty() ? Collections.singletonList(new Game()) : openings;
+        this.baseMillis = baseMillis;
+        this.incMillis = incMillis;
+        timeControl = seconds(baseMillis) + "+" + seconds(incMillis);
+        engines = new ThreadLocal<Engine[]>() {
+            @Override
+            protected Engine[] initialValue() {
+                Engine[] pair = {Tournament.this.first.create(), Tournament.this.second.create()};
+                synchronized (created) {
+                    created.addAll(Arrays.asList(pair));
+                }
+                return pair;
+            }
+        };
+    }
+
+    /**
+     * Sets the test that stops the match early
+     *
+     * @param sprt the test, null to play every game
+     */
+    public void setSprt(Sprt sprt) {
+        this.sprt = sprt;
+    }
+
+    /**
+     * Sets where the games are written
+     *
+     * @param pgn the writer, null to not keep the games
+     */
+    public void setPgn(PgnWriter pgn) {
+        this.pgn = pgn;
+    }
+
+    /**
+     * Sets the length after which a game is called a draw
+     *
+     * @param maxPlies the number of plies after the opening
+     */
+    public void setMaxPlies(int maxPlies) {
+        this.maxPlies = maxPlies;
+    }
+
+    /**
+     * Plays the match, returning when every game is over or the test has
+     * decided. The engines that hold anything outside the program, such as
+     * a process, are closed at the end.
+     *
+     * @param games the number of games
+     * @param threads the number of games played at once
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void run(int games, int threads) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "tournament-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        for (int i = 0; i < games; i++) {
+            final int round = i;
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    play(round);
+                }
+            });
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } finally {
+            synchronized (created) {
+                for (Engine e : created) {
+                    if (e instanceof Closeable) {
+                        try {
+                            ((Closeable) e).close();
+                        } catch (IOException ex) {
+                            System.err.println(ex);
+                        }
+                    }
+                }
+                created.clear();
+            }
+        }
+    }
+
+    /**
+     * Describes the results so far from the side of the first engine
+     *
+     * @return the summary
+     */
+    public synchronized String summary() {
+        long n = wins + draws + losses;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Games %d: +%d =%d -%d, score %.1f%%, elo %.1f +- %.1f",
+                n, wins, draws, losses, 100 * Sprt.score(wins, draws, losses),
+                Sprt.elo(wins, draws, losses), Sprt.eloMargin(wins, draws, losses)));
+        if (forfeits > 0) {
+            sb.append(", ").append(forfeits).append(" lost on time");
+        }
+        if (sprt != null) {
+            sb.append(String.format(", LLR %.2f [%.2f, %.2f]", sprt.llr(wins, draws, losses),
+                    sprt.getLowerBound(), sprt.getUpperBound()));
+            if (decision != Sprt.Decision.CONTINUE) {
+                sb.append(' ').append(decision);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Gets what the test decided
+     *
+     * @return the decision, {@code CONTINUE} if there is no test or it did
+     * not finish
+     */
+    public synchronized Sprt.Decision getDecision() {
+        return decision;
+    }
+
+    /**
+     * Plays one game, the first engine is white in even rounds
+     */
+    private void play(int round) {
+        if (stopped) {
+            return;
+        }
+        Engine[] pair = engines.get();
+        boolean firstWhite = round % 2 == 0;
+        Engine[] players = firstWhite ? pair : new Engine[]{pair[1], pair[0]};
+        players[0].newGame();
+        players[1].newGame();
+        Game game = openings.get(round / 2 % openings.size()).copy();
+        int startPly = game.getPly();
+        long[] clock = {baseMillis, baseMillis};
+        String result, termination = "normal";
+        while (true) {
+            GameStatus status = game.status();
+            if (status != GameStatus.IN_PROGRESS && status != GameStatus.CHECK) {
+                result = PgnWriter.resultOf(game);
+                break;
+            }
+            if (Bitbase.isDraw(game) || game.getPly() - startPly >= maxPlies) {
+                result = "1/2-1/2";
+                termination = "adjudication";
+                break;
+            }
+            if (stopped) {
+                return; // the match is decided, the game would not count
+            }
+            int side = game.getCurrentTurn();
+            long left = clock[side];
+            long millis = Math.max(1, Math.min(left / 30 + incMillis * 3 / 4, left / 2));
+            long start = System.nanoTime();
+            int move = players[side].think(game, millis);
+            clock[side] -= (System.nanoTime() - start) / 1000000;
+            if (clock[side] < 0) {
+                result = side == Game.WHITE ? "0-1" : "1-0";
+                termination = "time forfeit";
+                break;
+            }
+            clock[side] += incMillis;
+            try {
+                Object event = FlightEvents.start(FlightEvents.Type.MOVE);
+                game.makeMove(move);
+                FlightEvents.move(event, game.getHash(), move);
+            } catch (IllegalArgumentException ex) {
+                result = side == Game.WHITE ? "0-1" : "1-0";
+                termination = "rules infraction";
+                break;
+            }
+        }
+        record(round, game, players[0].getName(), players[1].getName(), result, termination, firstWhite);
+    }
+
+    /**
+     * Adds a finished game to the tally and the PGN, and checks the test
+     */
+    private synchronized void record(int round, Game game, String white, String black, String result,
+            String termination, boolean firstWhite) {
+        if (stopped) {
+            return;
+        }
+        if (result.equals("1/2-1/2")) {
+            draws++;
+        } else if (result.equals("1-0") == firstWhite) {
+            wins++;
+        } else {
+            losses++;
+        }
+        if (termination.equals("time forfeit")) {
+            forfeits++;
+        }
+        if (pgn != null) {
+            Map<String, String> tags = new LinkedHashMap<>();
+            tags.put("Event", firstWhite ? white + " vs " + black : black + " vs " + white);
+            tags.put("Date", new SimpleDateFormat("yyyy.MM.dd").format(new Date()));
+            tags.put("Round", Integer.toString(round + 1));
+            tags.put("White", white);
+            tags.put("Black", black);
+            tags.put("TimeControl", timeControl);
+            tags.put("Termination", termination);
+            try {
+                pgn.write(game, tags, result);
+            } catch (IOException ex) {
+                System.err.println(ex);
+            }
+        }
+        long n = wins + draws + losses;
+        if (sprt != null) {
+            decision = sprt.decide(wins, draws, losses);
+            stopped = decision != Sprt.Decision.CONTINUE;
+        }
+        if (n % REPORT_EVERY == 0) {
+            System.out.println(summary());
+        }
+    }
+
+    /**
+     * Reads openings from an EPD file, one position a line. Only the first
+     * four fields are used, so the operations after them are ignored.
+     *
+     * @param f the file
+     * @return the positions
+     * @throws IOException if the file cannot be read or a position is bad
+     */
+    public static List<Game> readEpd(File f) throws IOException {
+        List<Game> games = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(f),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.trim().split("\\s+");
+                if (fields.length < 4 || fields[0].startsWith("#")) {
+                    continue;
+                }
+                try {
+                    games.add(Game.fromFen(fields[0] + " " + fields[1] + " " + fields[2] + " " + fields[3]));
+                } catch (IllegalArgumentException ex) {
+                    throw new IOException(ex.getMessage());
+                }
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Makes openings by following random lines of an opening book
+     *
+     * @param book the book
+     * @param count the number of openings wanted
+     * @param plies the length of each line, shorter if it leaves the book
+     * @param random where the lines come from
+     * @return the openings, all different, fewer if the book runs out
+     */
+    public static List<Game> fromBook(OpeningBook book, int count, int plies, Random random) {
+        List<Game> games = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (int tries = 0; games.size() < count && tries < count * 10; tries++) {
+            Game game = new Game();
+            for (int i = 0; i < plies; i++) {
+                int move = book.probe(game, random);
+                if (move == Move.NONE) {
+                    break;
+                }
+                game.makeMove(move);
+            }
+            if (seen.add(game.getHash())) {
+                games.add(game);
+            }
+        }
+        return games;
+    }
+
+    private static String seconds(long millis) {
+        return millis % 1000 == 0 ? Long.toString(millis / 1000) : Double.toString(millis / 1000.0);
+    }
+
+    private static Engine.Factory engine(String spec) {
+        return spec.startsWith("uci:") ? UciEngine.parse(spec.substring(4)) : SearchEngine.parse(spec);
+    }
+
+    private static long millis(String seconds) {
+        return Math.round(Double.parseDouble(seconds) * 1000);
+    }
+
+    /**
+     * Runs a match from the command line, ex
+     * {@code -games 2000 -threads 8 -tc 10+0.1 -openings book.bin
+     * -first new:16 -second base:16 -sprt 0 5 -pgn games.pgn}. Engines are
+     * given as name:megabytes:depth, or as uci:name:command for a program
+     * spoken to over UCI, ex {@code -second "uci:base:java -jar base.jar"}.
+     * Openings are given as an EPD file or a book.
+     *
+     * @param args the options
+     */
+    public static void main(String[] args) {
+        int games = 1000, threads = Runtime.getRuntime().availableProcessors(), plies = 8;
+        String tc = "10+0.1", openingFile = null, pgnFile = null;
+        String firstSpec = "first", secondSpec = "second";
+        double elo0 = 0, elo1 = 0, alpha = 0.05, beta = 0.05;
+        boolean test = false;
+        Metrics.register();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-games":
+                        games = Integer.parseInt(args[++i]);
+                        break;
+                    case "-threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "-tc":
+                        tc = args[++i];
+                        break;
+                    case "-openings":
+                        openingFile = args[++i];
+                        break;
+                    case "-plies":
+                        plies = Integer.parseInt(args[++i]);
+                        break;
+                    case "-pgn":
+                        pgnFile = args[++i];
+                        break;
+                    case "-first":
+                        firstSpec = args[++i];
+                        break;
+                    case "-second":
+                        secondSpec = args[++i];
+                        break;
+                    case "-sprt":
+                        elo0 = Double.parseDouble(args[++i]);
+                        elo1 = Double.parseDouble(args[++i]);
+                        test = true;
+                        break;
+                    case "-alpha":
+                        alpha = Double.parseDouble(args[++i]);
+                        break;
+                    case "-beta":
+                        beta = Double.parseDouble(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            String[] time = tc.split("\\+");
+            List<Game> openings = new ArrayList<>();
+            if (openingFile != null && openingFile.endsWith(".bin")) {
+                try (OpeningBook book = new OpeningBook(new File(openingFile))) {
+                    openings = fromBook(book, (games + 1) / 2, plies, new Random());
+                }
+            } else if (openingFile != null) {
+                openings = readEpd(new File(openingFile));
+            }
+            Tournament t = new Tournament(engine(firstSpec), engine(secondSpec),
+                    openings, millis(time[0]), time.length > 1 ? millis(time[1]) : 0);
+            if (test) {
+                t.setSprt(new Sprt(elo0, elo1, alpha, beta));
+            }
+            PgnWriter pgn = pgnFile == null ? null : new PgnWriter(new FileOutputStream(pgnFile));
+            t.setPgn(pgn);
+            long start = System.currentTimeMillis();
+            t.run(games, threads);
+            if (pgn != null) {
+                pgn.close();
+            }
+            System.out.println(t.summary());
+            System.out.println("Took " + (System.currentTimeMillis() - start) / 1000 + "s");
+        } catch (IOException | InterruptedException | RuntimeException ex) {
+            System.err.println(ex);
+        }
+    }
+}
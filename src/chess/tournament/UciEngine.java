@@ -0,0 +1,175 @@
+package chess.tournament;
+
+import chess.game.Game;
+import chess.game.Move;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An engine run as a separate process and spoken to over UCI, so two builds
+ * of this program, or any other UCI engine, can be played against each
+ * other. Each engine is a process of its own, which is ended when the
+ * engine is closed.
+ *
+ * @author Jurgen Aliaj
+ */
+public class UciEngine implements Engine, Closeable {
+
+    private static final long START_HASH = new Game().getHash();
+    private final String name;
+    private final Process process;
+    private final BufferedReader in;
+    private final Writer out;
+
+    /**
+     * Starts an engine and waits for it to be ready
+     *
+     * @param name the name
+     * @param command the program and its arguments
+     * @throws IOException if the program cannot be started or does not
+     * answer
+     */
+    public UciEngine(String name, String... command) throws IOException {
+        this.name = name;
+        process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        in = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        out = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+        try {
+            send("uci");
+            waitFor("uciok");
+            ready();
+        } catch (IOException ex) {
+            process.destroy();
+            throw ex;
+        }
+    }
+
+    /**
+     * Makes engines that each run the same program
+     *
+     * @param name the name
+     * @param command the program and its arguments
+     * @return the factory
+     */
+    public static Engine.Factory factory(final String name, final String... command) {
+        return new Engine.Factory() {
+            @Override
+            public Engine create() {
+                try {
+                    return new UciEngine(name, command);
+                } catch (IOException ex) {
+                    throw new IllegalStateException("Cannot start " + name + ": " + ex.getMessage());
+                }
+            }
+        };
+    }
+
+    /**
+     * Reads an engine from name:command, ex "base:java -jar base.jar", the
+     * command being split at spaces
+     *
+     * @param spec the description
+     * @return a factory for the engine
+     * @throws IllegalArgumentException if the description cannot be read
+     */
+    public static Engine.Factory parse(String spec) {
+        String[] parts = spec.split(":", 2);
+        if (parts.length < 2 || parts[1].trim().isEmpty()) {
+            throw new IllegalArgumentException("Bad engine: " + spec);
+        }
+        return factory(parts[0], parts[1].trim().split("\\s+"));
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void newGame() {
+        try {
+            send("ucinewgame");
+            ready();
+        } catch (IOException ex) {
+            System.err.println(ex);
+        }
+    }
+
+    /**
+     * Sends the game from its starting position with the moves played since,
+     * so the engine can see repetitions, and searches for the time given
+     *
+     * @return the move, {@code Move.NONE} if the engine failed to give one
+     */
+    @Override
+    public int think(Game game, long millis) {
+        StringBuilder position = new StringBuilder("position ");
+        if (game.getStartPly() == 0 && game.getHash(0) == START_HASH) {
+            position.append("startpos");
+        } else {
+            position.append("fen ").append(game.getStartingPosition().toFen());
+        }
+        if (game.getPly() > game.getStartPly()) {
+            position.append(" moves");
+            for (int i = game.getStartPly(); i < game.getPly(); i++) {
+                position.append(' ').append(Move.toString(game.getMove(i)));
+            }
+        }
+        try {
+            send(position.toString());
+            send("go movetime " + millis);
+            String[] words = waitFor("bestmove").split("\\s+");
+            return words.length > 1 ? Move.parse(words[1]) : Move.NONE;
+        } catch (IOException | IllegalArgumentException ex) {
+            System.err.println(name + ": " + ex);
+            return Move.NONE;
+        }
+    }
+
+    /**
+     * Asks the engine to quit and ends the process
+     */
+    @Override
+    public void close() {
+        try {
+            send("quit");
+        } catch (IOException ex) {
+            //it has already gone
+        }
+        process.destroy();
+    }
+
+    private void send(String command) throws IOException {
+        out.write(command);
+        out.write('\n');
+        out.flush();
+    }
+
+    private void ready() throws IOException {
+        send("isready");
+        waitFor("readyok");
+    }
+
+    /**
+     * Reads lines until one starting with the word given
+     *
+     * @return the line
+     * @throws EOFException if the engine quits first
+     */
+    private String waitFor(String word) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.equals(word) || line.startsWith(word + " ")) {
+                return line;
+            }
+        }
+        throw new EOFException(name + " quit while waiting for " + word);
+    }
+}
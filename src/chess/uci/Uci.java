@@ -0,0 +1,391 @@
+package chess.uci;
+
+import chess.engine.Search;
+import chess.engine.TranspositionTable;
+import chess.game.Game;
+import chess.game.Move;
+import chess.metrics.Metrics;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays through the UCI protocol on standard input and output, for chess GUIs
+ * and tournament managers. Commands are read on the main thread and searches
+ * run on their own threads, so stop and isready are answered at once even
+ * while the engine is thinking. With more than one thread the searches share
+ * the transposition table and the main one gives the move (lazy SMP). After
+ * go infinite or go ponder the best move is held back until stop or
+ * ponderhit, even if the search ends sooner.
+ *
+ * @author Jurgen Aliaj
+ */
+public class Uci {
+
+    private static final int DEFAULT_HASH = 16;
+    private static final int MAX_HASH = 1024;
+    private static final int MAX_THREADS = 64;
+    private final BufferedReader in;
+    private final PrintStream out;
+    private TranspositionTable table = new TranspositionTable(DEFAULT_HASH);
+    private int threads = 1;
+    private Game game = new Game();
+    private final ExecutorService pool = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "search");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "search-timer");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    private Search[] searches = new Search[0];
+    private Future<?> running;
+    //guards the fields below, which say whether the best move may be sent
+    private final Object hold = new Object();
+    private boolean waiting, pondering;
+    private long ponderMillis;
+
+    /**
+     * Creates a front end
+     *
+     * @param in where commands are read from
+     * @param out where replies are written
+     */
+    public Uci(BufferedReader in, PrintStream out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    /**
+     * Reads and answers commands until quit or the end of the input
+     *
+     * @throws IOException if the input cannot be read
+     */
+    public void run() throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] words = line.trim().split("\\s+");
+            switch (words[0]) {
+                case "uci":
+                    send("id name Chess 2.0");
+                    send("id author Abel MacNeil, Jurgen Aliaj");
+                    send("option name Hash type spin default " + DEFAULT_HASH + " min 1 max " + MAX_HASH);
+                    send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+                    send("uciok");
+                    break;
+                case "isready":
+                    send("readyok");
+                    break;
+                case "setoption":
+                    stopAndWait();
+                    setOption(words);
+                    break;
+                case "ucinewgame":
+                    stopAndWait();
+                    table.clear();
+                    break;
+                case "position":
+                    stopAndWait();
+                    setPosition(words);
+                    break;
+                case "go":
+                    stopAndWait();
+                    go(words);
+                    break;
+                case "stop":
+                    stop();
+                    break;
+                case "ponderhit":
+                    ponderHit();
+                    break;
+                case "quit":
+                    stop();
+                    return;
+                default:
+                    break; // unknown commands are ignored, as the protocol asks
+            }
+        }
+        stop();
+    }
+
+    /**
+     * Handles setoption name Hash value 64 and setoption name Threads value 4
+     */
+    private void setOption(String[] words) {
+        String name = value(words, "name", "value");
+        String value = value(words, "value", null);
+        try {
+            if (name.equalsIgnoreCase("Hash")) {
+                table = new TranspositionTable(clamp(Integer.parseInt(value), 1, MAX_HASH));
+            } else if (name.equalsIgnoreCase("Threads")) {
+                threads = clamp(Integer.parseInt(value), 1, MAX_THREADS);
+            }
+        } catch (NumberFormatException | NullPointerException ex) {
+            send("info string bad value for " + name);
+        }
+    }
+
+    /**
+     * Handles position startpos|fen ... [moves ...]
+     */
+    private void setPosition(String[] words) {
+        try {
+            String fen = value(words, "fen", "moves");
+            Game g = fen != null ? Game.fromFen(fen) : new Game();
+            String moves = value(words, "moves", null);
+            if (moves != null && !moves.isEmpty()) {
+                for (String move : moves.split(" ")) {
+                    g.makeMove(Move.parse(move));
+                }
+            }
+            game = g;
+        } catch (IllegalArgumentException ex) {
+            send("info string " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Handles go with wtime/btime/winc/binc/movestogo, movetime, depth,
+     * infinite or ponder
+     */
+    private void go(String[] words) {
+        int depth = Search.MAX_DEPTH;
+        long time = 0, inc = 0, moveTime = 0;
+        int movesToGo = 30;
+        boolean white = game.getCurrentTurn() == Game.WHITE;
+        boolean infinite = false, ponder = false;
+        for (String word : words) {
+            infinite |= word.equals("infinite");
+            ponder |= word.equals("ponder");
+        }
+        for (int i = 1; i < words.length - 1; i++) {
+            try {
+                long value = Long.parseLong(words[i + 1]);
+                switch (words[i]) {
+                    case "wtime":
+                        time = white ? value : time;
+                        break;
+                    case "btime":
+                        time = white ? time : value;
+                        break;
+                    case "winc":
+                        inc = white ? value : inc;
+                        break;
+                    case "binc":
+                        inc = white ? inc : value;
+                        break;
+                    case "movestogo":
+                        movesToGo = (int) Math.max(1, value);
+                        break;
+                    case "movetime":
+                        moveTime = value;
+                        break;
+                    case "depth":
+                        depth = (int) value;
+                        break;
+                }
+            } catch (NumberFormatException ex) {
+                //a keyword without a number, ex infinite
+            }
+        }
+        //use an even share of the time left, never more than half of it
+        long budget = moveTime > 0 ? moveTime
+                : time > 0 ? Math.max(1, Math.min(time / movesToGo + inc * 3 / 4, time / 2)) : 0;
+        //pondering has no limit, the time only starts on ponderhit
+        final long millis = infinite || ponder ? 0 : budget;
+        synchronized (hold) {
+            waiting = infinite || ponder;
+            pondering = ponder;
+            ponderMillis = budget;
+        }
+        final int maxDepth = depth;
+        final Game position = game.copy();
+        searches = new Search[threads];
+        for (int i = 0; i < threads; i++) {
+            searches[i] = new Search(table);
+        }
+        for (int i = 1; i < threads; i++) {
+            final Search helper = searches[i];
+            final Game copy = position.copy();
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    helper.search(copy, maxDepth, millis, null);
+                }
+            });
+        }
+        final Search main = searches[0];
+        final Search[] all = searches;
+        running = pool.submit(new Runnable() {
+            @Override
+            public void run() {
+                Search.Result result = main.search(position, maxDepth, millis, new Search.Listener() {
+                    @Override
+                    public void searched(Search.Result result) {
+                        sendInfo(result, all);
+                    }
+                });
+                for (Search s : all) {
+                    s.stop();
+                }
+                awaitRelease();
+                int[] pv = result.getPv();
+                send("bestmove " + (result.getMove() == Move.NONE ? "0000" : Move.toString(result.getMove()))
+                        + (pv.length > 1 ? " ponder " + Move.toString(pv[1]) : ""));
+            }
+        });
+    }
+
+    private void sendInfo(Search.Result result, Search[] all) {
+        StringBuilder sb = new StringBuilder("info depth ").append(result.getDepth());
+        int score = result.getScore();
+        if (Math.abs(score) >= Search.MATE - Search.MAX_DEPTH) {
+            int moves = (Search.MATE - Math.abs(score) + 1) / 2;
+            sb.append(" score mate ").append(score > 0 ? moves : -moves);
+        } else {
+            sb.append(" score cp ").append(score);
+        }
+        long nodes = 0;
+        for (Search s : all) {
+            nodes += s.getNodes();
+        }
+        sb.append(" nodes ").append(nodes).append(" time ").append(result.getMillis());
+        if (result.getMillis() > 0) {
+            sb.append(" nps ").append(nodes * 1000 / result.getMillis());
+        }
+        sb.append(" pv");
+        for (int move : result.getPv()) {
+            sb.append(' ').append(Move.toString(move));
+        }
+        send(sb.toString());
+    }
+
+    private void stop() {
+        for (Search s : searches) {
+            s.stop();
+        }
+        synchronized (hold) {
+            waiting = false;
+            pondering = false;
+            hold.notifyAll();
+        }
+    }
+
+    /**
+     * The move pondered on was played, so the search goes on as a normal
+     * one with the time it would have had, counted from now
+     */
+    private void ponderHit() {
+        long millis;
+        synchronized (hold) {
+            if (!pondering) {
+                return;
+            }
+            pondering = false;
+            waiting = false;
+            millis = ponderMillis;
+            hold.notifyAll();
+        }
+        if (millis > 0) {
+            final Search[] all = searches;
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    for (Search s : all) {
+                        s.stop();
+                    }
+                }
+            }, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Waits until the best move may be sent, after infinite or ponder it is
+     * only sent once asked for
+     */
+    private void awaitRelease() {
+        synchronized (hold) {
+            while (waiting) {
+                try {
+                    hold.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the search and waits for its best move to be sent, commands that
+     * change the position or options must not overlap a search
+     */
+    private void stopAndWait() {
+        stop();
+        if (running != null) {
+            try {
+                running.get();
+            } catch (Exception ex) {
+                System.err.println(ex);
+            }
+            running = null;
+        }
+    }
+
+    private void send(String s) {
+        synchronized (out) {
+            out.println(s);
+            out.flush();
+        }
+    }
+
+    /**
+     * Gets the words after a keyword, up to another keyword or the end
+     *
+     * @return the words joined by spaces, or null if the keyword is missing
+     */
+    private static String value(String[] words, String key, String end) {
+        StringBuilder sb = null;
+        for (int i = 1; i < words.length; i++) {
+            if (sb == null && words[i].equals(key)) {
+                sb = new StringBuilder();
+            } else if (sb != null && words[i].equals(end)) {
+                break;
+            } else if (sb != null) {
+                if (sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(words[i]);
+            }
+        }
+        return sb == null ? null : sb.toString();
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    public static void main(String[] args) {
+        Metrics.register();
+        try {
+            new Uci(new BufferedReader(new InputStreamReader(System.in)), System.out).run();
+        } catch (IOException ex) {
+            System.err.println(ex);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package chess.ui;
+
+import chess.engine.Search;
+import chess.engine.TranspositionTable;
+import chess.game.Game;
+import chess.game.Move;
+import chess.pgn.San;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import javax.swing.BorderFactory;
+import javax.swing.JPanel;
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+
+/**
+ * Shows the engine's view of the current position, analysed without end on
+ * a background thread whoever's turn it is. The search reports each depth
+ * as it completes, and the panel shows the latest at most a few times a
+ * second. When the move played is the one the engine expected, the rest of
+ * its line is shown at once while the next position is searched; the
+ * transposition table is kept between moves either way.
+ *
+ * @author Jurgen Aliaj
+ */
+public final class AnalysisPanel extends JPanel {
+
+    private static final long serialVersionUID = 1L;
+    private static final int UPDATE_INTERVAL = 250; // milliseconds
+    private static final int TABLE_SIZE = 64; // megabytes
+    private static final int PV_SHOWN = 12;
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "analysis");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    private final TranspositionTable table = new TranspositionTable(TABLE_SIZE);
+    private final JTextArea text;
+    private final Timer timer;
+    private volatile Search search;
+    private Game position;
+    //written by the analysis thread, read on the event thread
+    private volatile Line latest;
+    private Line shown;
+
+    /**
+     * The best line found for a position
+     */
+    private static final class Line {
+
+        final Game position;
+        final int score, depth;
+        final int[] pv;
+        final long nodes, millis;
+
+        Line(Game position, int score, int depth, int[] pv, long nodes, long millis) {
+            this.position = position;
+            this.score = score;
+            this.depth = depth;
+            this.pv = pv;
+            this.nodes = nodes;
+            this.millis = millis;
+        }
+    }
+
+    /**
+     * Creates an empty panel, analysis starts with {@code setPosition}
+     *
+     * @param background the color behind the text
+     * @param foreground the color of the text
+     */
+    public AnalysisPanel(Color background, Color foreground) {
+        super(null);
+        setBackground(background);
+        setBorder(BorderFactory.createEtchedBorder());
+        text = new JTextArea();
+        text.setEditable(false);
+        text.setLineWrap(true);
+        text.setWrapStyleWord(true);
+        text.setOpaque(false);
+        text.setForeground(foreground);
+        text.setFont(new Font("Calibri", Font.BOLD, 16));
+        add(text);
+        timer = new Timer(UPDATE_INTERVAL, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                Line line = latest;
+                if (line != shown) {
+                    shown = line;
+                    show(line);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void setBounds(int x, int y, int width, int height) {
+        super.setBounds(x, y, width, height);
+        text.setBounds(10, 10, width - 20, height - 20);
+    }
+
+    /**
+     * Starts analysing a position, stopping the analysis of the last one
+     *
+     * @param game the game, which is copied
+     */
+    public void setPosition(Game game) {
+        Game copy = game.copy();
+        Line line = latest;
+        latest = null;
+        //if the move played was the one expected, go on from the rest of the line
+        if (line != null && line.pv.length > 1 && game.getPly() == line.position.getPly() + 1
+                && game.getHash(game.getPly() - 1) == line.position.getHash()
+                && game.getMove(game.getPly() - 1) == line.pv[0]) {
+            latest = new Line(copy, -line.score, line.depth - 1,
+                    Arrays.copyOfRange(line.pv, 1, line.pv.length), 0, 0);
+        }
+        stop();
+        position = copy;
+        final Game root = copy.copy();
+        final Search s = new Search(table);
+        search = s;
+        if (latest == null) {
+            text.setText("Thinking...");
+            shown = null;
+        }
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                s.search(root, Search.MAX_DEPTH, 0, new Search.Listener() {
+                    @Override
+                    public void searched(Search.Result result) {
+                        //a search stopped since may still report its last depth
+                        if (s == search && result.getPv().length > 0) {
+                            latest = new Line(root, result.getScore(), result.getDepth(), result.getPv(),
+                                    result.getNodes(), result.getMillis());
+                        }
+                    }
+                });
+            }
+        });
+        timer.start();
+    }
+
+    /**
+     * Stops analysing, what was found so far stays shown
+     */
+    public void stop() {
+        timer.stop();
+        if (search != null) {
+            search.stop();
+        }
+    }
+
+    /**
+     * Gets the best move found so far for the position being analysed,
+     * without searching any further
+     *
+     * @return the move, packed as by {@code Move.encode}, or
+     * {@code Move.NONE} if nothing has been found yet
+     */
+    public int getBestMove() {
+        Line line = latest;
+        return line == null || line.position.getHash() != position.getHash() ? Move.NONE : line.pv[0];
+    }
+
+    /**
+     * Writes a line to the panel, the score from white's point of view and
+     * the moves in algebraic notation
+     */
+    private void show(Line line) {
+        if (line == null) {
+            text.setText("Thinking...");
+            return;
+        }
+        int score = line.position.getCurrentTurn() == Game.BLACK ? -line.score : line.score;
+        StringBuilder sb = new StringBuilder();
+        if (Math.abs(score) >= Search.MATE - Search.MAX_DEPTH) {
+            int moves = (Search.MATE - Math.abs(score) + 1) / 2;
+            sb.append(score > 0 ? "White" : "Black").append(" mates in ").append(moves);
+        } else {
+            sb.append(String.format("Eval: %+.2f", score / 100.0));
+        }
+        sb.append("\nDepth: ").append(line.depth);
+        if (line.millis > 0) {
+            sb.append("\nNodes: ").append(line.nodes).append(" (").append(line.nodes * 1000 / line.millis).append("/s)");
+        }
+        sb.append("\n\n");
+        Game g = line.position.copy();
+        for (int i = 0; i < line.pv.length && i < PV_SHOWN; i++) {
+            int number = (g.getStartPly() + g.getPly()) / 2 + 1;
+            if (g.getCurrentTurn() == Game.WHITE) {
+                sb.append(number).append(". ");
+            } else if (i == 0) {
+                sb.append(number).append("... ");
+            }
+            try {
+                sb.append(San.toString(g, line.pv[i])).append(' ');
+                g.makeMove(line.pv[i]);
+            } catch (IllegalArgumentException ex) {
+                break; // the rest of the line was written for another position
+            }
+        }
+        text.setText(sb.toString());
+    }
+}
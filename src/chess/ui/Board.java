@@ -1,35 +1,63 @@
 package chess.ui;
 
+import chess.endgame.Bitbase;
 import chess.game.Position;
 import chess.game.Game;
+import chess.game.GameStatus;
+import chess.game.Move;
+import chess.game.Pawn;
 import chess.game.Piece;
+import chess.metrics.FlightEvents;
 import java.awt.Color;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
 import javax.swing.BorderFactory;
-import javax.swing.JButton;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.border.Border;
 
 /**
- * This is the main Board that holds all of the pieces and squares. 
+ * This is the main Board that holds all of the pieces and squares.
  * All of the {@code Game} components are accessed here.
+ * The squares and pieces are painted by the board itself, and only the
+ * squares that change are repainted. Moves are played on a worker thread,
+ * the {@code Game} must not be read on the event thread while one is.
  *
  * @author Abel MacNeil, Jurgen Aliaj
  */
-public final class Board extends JPanel implements ActionListener {
+public final class Board extends JPanel {
 
     private int size;
     private Game game;
-    private JButton[][] squares;
-    private ImagePanel[][] imgs;
     private boolean isFirstClick;
     private Piece pieceToMove;
     private Position positionToMoveTo;
-    private int initI = 0, initJ = 0;
     private Color lightColor;
     private Color darkColor;
     private ChessFrame cframe;
+    private PromotionChooser promotionChooser;
+    private final Border border = BorderFactory.createEtchedBorder();
+    //the pieces as last painted, row * 8 + column
+    private final Piece[] shown = new Piece[64];
+    //the highlighted square (-1 if none) and its color
+    private int selected = -1;
+    private Color selectedColor;
+    //the legal moves of the position shown, null until worked out in the background
+    private int[] moves;
+    //the squares the selected piece can move to, one bit per row * 8 + column
+    private long targets;
+    private static final Color TARGET_COLOR = new Color(144, 238, 144);
+    private final UiWorker worker = new UiWorker();
+    //when the last click happened, and the click whose move is waiting to be painted (0 if none)
+    private long clickTime, paintPending;
+    //whether a move is being played on the worker, and what waits for it to be shown
+    private boolean playing;
+    private final List<Runnable> afterMove = new ArrayList<>();
 
     /**
      * Main Constructor, creates a new Board to be added to another JCompnonent.
@@ -41,50 +69,81 @@ public final class Board extends JPanel implements ActionListener {
     public Board(int size, Game game, ChessFrame cframe) {
         super();
         setLayout(null);
-        lightColor = ChessFrame.lightColor;
-        darkColor = ChessFrame.darkColor;
+        lightColor = cframe.lightColor;
+        darkColor = cframe.darkColor;
         this.size = size; //initialize
         this.game = game;
         this.cframe = cframe;
-        squares = new JButton[8][8];
-        imgs = new ImagePanel[8][8];
+        promotionChooser = new PromotionDialog(cframe);
         isFirstClick = true;
 
         init();
+        examine(false);
     }
 
     /**
-     * Initializes the frame's components
+     * Initializes the board's pieces and listens for clicks
      */
     public void init() {
-        //loop through all of the squares
-        for (int i = squares.length - 1; i > -1; i--) {
-            for (int j = 0; j < squares.length; j++) {
-                squares[i][j] = new JButton();//create new button
-                //determines whether or not to place the background the square as light or dark
-                if ((i % 2 == 0 && j % 2 == 1) || (i % 2 == 1 && j % 2 == 0)) {
-                    squares[i][j].setBackground(ChessFrame.lightColor);
-                } else {
-                    squares[i][j].setBackground(ChessFrame.darkColor);
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                shown[i * 8 + j] = game.board[i][j].getPiece();
+            }
+        }
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                //counts the time the event waited in the queue as well
+                clickTime = System.nanoTime() - Math.max(0, System.currentTimeMillis() - e.getWhen()) * 1000000;
+                int j = e.getX() / size;
+                int i = 7 - e.getY() / size;
+                //ignore clicks outside the squares
+                if (e.getX() >= 0 && e.getY() >= 0 && i >= 0 && j < 8) {
+                    squareClicked(i, j);
                 }
-                //sets an etched border for the button
-                squares[i][j].setBorder(BorderFactory.createEtchedBorder());
-                squares[i][j].setLayout(null);//sets the layout manage to null
-                imgs[i][j] = new ImagePanel("");//creates an empty image panel
-                //if the square is occupied place an image of the piece occupying the place
-                if (game.board[i][j].isOccupied()) {
-                    imgs[i][j] = new ImagePanel(game.board[i][j].getPiece().getImagePath());
-                    squares[i][j].add(imgs[i][j]);//adds the image
-                    imgs[i][j].setBounds(0, 0, size, size);//sets the bounds of the image
+            }
+        });
+    }
 
+    //paints only the squares inside the area being repainted
+    @Override
+    protected void paintComponent(Graphics g) {
+        long started = System.nanoTime();
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, size * 8, size * 8);
+        }
+        int firstCol = Math.max(0, clip.x / size);
+        int lastCol = Math.min(7, (clip.x + clip.width - 1) / size);
+        int firstRow = Math.max(0, 7 - (clip.y + clip.height - 1) / size);
+        int lastRow = Math.min(7, 7 - clip.y / size);
+        for (int i = firstRow; i <= lastRow; i++) {
+            for (int j = firstCol; j <= lastCol; j++) {
+                int x = j * size, y = (7 - i) * size;
+                //determines whether or not to make the square light or dark
+                if (i * 8 + j == selected) {
+                    g.setColor(selectedColor);
+                } else if ((targets >>> (i * 8 + j) & 1) != 0) {
+                    g.setColor(TARGET_COLOR);
+                } else if ((i % 2 == 0 && j % 2 == 1) || (i % 2 == 1 && j % 2 == 0)) {
+                    g.setColor(lightColor);
+                } else {
+                    g.setColor(darkColor);
+                }
+                g.fillRect(x, y, size, size);
+                border.paintBorder(this, g, x, y, size, size);
+                Piece p = shown[i * 8 + j];
+                if (p != null) {
+                    g.drawImage(Sprites.get(p), x + 1, y + 1, null);
                 }
-
-                add(squares[i][j]);//adds the buttons
-                //setst he bonds of the button with respect to the board
-                squares[i][j].setBounds((j) * size, (7 - i) * size, size, size);
-                squares[i][j].addActionListener(this);//adds an actionlistener for actions
             }
         }
+        long now = System.nanoTime();
+        LatencyTrace.PAINT.record(now - started);
+        if (paintPending != 0) {
+            LatencyTrace.CLICK_TO_PAINT.record(now - paintPending);
+            paintPending = 0;
+        }
     }
 
     /**
@@ -115,19 +174,9 @@ public final class Board extends JPanel implements ActionListener {
         //copies our variables
         this.lightColor = light;
         this.darkColor = dark;
-        ChessFrame.lightColor = light;
-        ChessFrame.darkColor = dark;
-        //loops and sets the colors for all of the squares
-        for (int i = squares.length - 1; i > -1; i--) {
-            for (int j = 0; j < squares.length; j++) {
-                //determines whether or not to make the square light or dark
-                if ((i % 2 == 0 && j % 2 == 1) || (i % 2 == 1 && j % 2 == 0)) {
-                    squares[i][j].setBackground(lightColor);
-                } else {
-                    squares[i][j].setBackground(darkColor);
-                }
-            }
-        }
+        cframe.lightColor = light;
+        cframe.darkColor = dark;
+        repaint();//every square changes color
         //sets the colors for number and letter labels on the left an bottom
         for (int i = 0; i < cframe.letterLbls.length; i++) {
             //every other label is dark
@@ -144,111 +193,330 @@ public final class Board extends JPanel implements ActionListener {
     }
 
     /**
-     * Updates the board, setting the piece's images.
+     * Updates the board, repainting the squares whose piece has changed
+     * since the last update (for a move the squares moved from and to, and
+     * the rook's squares when castling or the captured pawn's en passant).
      */
     public void updateBoard() {
-        //loops through all of the buttons
-        for (int i = squares.length - 1; i > -1; i--) {
-            for (int j = 0; j < squares.length; j++) {
-                squares[i][j].remove(imgs[i][j]);//gets rid of the old image
-                //if the pieces is occupied set the image
-                if (game.board[i][j].getPiece() != null) {
-                    imgs[i][j] = new ImagePanel(game.board[i][j].getPiece().getImagePath());
-                    squares[i][j].add(imgs[i][j]);
-                    imgs[i][j].setBounds(0, 0, size, size);
-                } else { //sets the image to empty otherwise
-                    imgs[i][j] = new ImagePanel("");
-                    squares[i][j].add(imgs[i][j]);
-                    imgs[i][j].setBounds(0, 0, size, size);
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                Piece p = game.board[i][j].getPiece();
+                if (shown[i * 8 + j] != p) {
+                    shown[i * 8 + j] = p;
+                    repaintSquare(i * 8 + j);
                 }
             }
         }
     }
 
     /**
-     * This method is called when a button is pressed
+     * Handles a click on a square, the first click picks a piece and the
+     * second one moves it. The legal moves are worked out in the background
+     * after each move, clicks are ignored until they are known.
      *
-     * @param e the ActionEvent for the button.
+     * @param i the row clicked
+     * @param j the column clicked
      */
-    @Override
-    public void actionPerformed(ActionEvent e) {
-        //loops through all the buttons
-        for (int i = squares.length - 1; i > -1; i--) {
-            for (int j = 0; j < squares.length; j++) {
-                //if a square is pressed
-                if (squares[i][j] == e.getSource()) {
-                    //If the square is occupied and it is the first click
-                    if (!game.board[i][j].isEmpty() && isFirstClick) {
-                        //saves the current piece
-                        this.pieceToMove = game.board[i][j].getPiece();
-                        //if the pieces is ours, set the background green
-                        if (game.board[i][j].getPiece().getColor() == game.getCurrentTurn()) {
-                            squares[i][j].setBackground(Color.GREEN);
-                        } else {//otherwise set it red
-                            squares[i][j].setBackground(Color.RED);
-                        }
-                        isFirstClick = !isFirstClick;//not first click anymore
-                        
-                        //if is not the first click
-                    } else if (!isFirstClick) {
-
-                        isFirstClick = !isFirstClick;//set to opposite
-                        //if we click our piece on the second click
-                        if (game.board[i][j].isOccupied() && game.board[i][j].getPiece().getColor() == game.getCurrentTurn()) {
-                            //resets the colors
-                            setColors(lightColor, darkColor);
-                            //recursively calls the method again, this time as a first click
-                            actionPerformed(e);
-                            return;
-                        }
-                        //save the position clicked
-                        this.positionToMoveTo = game.board[i][j];
-                        //if the piece can move to the new postion and it is our color...
-                        if (this.pieceToMove.isValidMove(positionToMoveTo)
-                                && pieceToMove.getColor() == game.getCurrentTurn()) {
-                            System.out.println(pieceToMove + " to " + positionToMoveTo);
-                            //save any piece that might be removed
-                            Piece removed = game.nextTurn(pieceToMove, positionToMoveTo);
-
-                            //if a piece has been captured
-                            if (removed != null) {
-                                //add the piece to the side
-                                cframe.addRemovedPiece(removed);
-                                //remove the image from the square
-                                squares[i][j].remove(imgs[i][j]);
-                            }
-                            this.updateBoard();//update the board
-                            cframe.setTurnText(game.getCurrentTurn());//let the user know who's turn it is 
-                        }
-                        //if the game is in checkmate
-                        if (pieceToMove.isCheckMate()) {
-                            //let the user know who won the game
-                            if (game.getCurrentTurn() == Game.BLACK) {
-                                JOptionPane.showMessageDialog(cframe, "Checkmate, white wins!");
-                            } else {
-                                JOptionPane.showMessageDialog(cframe, "Checkmate, black wins!");
-                            }
-                            cframe.reset();//resets the game
-                        } else if (pieceToMove.isStaleMate()) {//if the game is in stalemate
-                            JOptionPane.showMessageDialog(cframe, "Stalemate, it's a draw!");
-                            cframe.reset();
-                        } else if (pieceToMove.isDraw()) {//if the game is a draw
-                            JOptionPane.showMessageDialog(cframe, "Draw by insufficient material.");
-                            cframe.reset();
-                        }
-                        setColors(lightColor, darkColor);//sets the colors
+    private void squareClicked(int i, int j) {
+        if (moves == null) {
+            if (!worker.isBusy()) {
+                //the last task failed
+                playing = false;
+                runAfterMove();
+                examine(false);
+            }
+            return;
+        }
+        //If the square is occupied and it is the first click
+        if (!game.board[i][j].isEmpty() && isFirstClick) {
+            //saves the current piece
+            this.pieceToMove = game.board[i][j].getPiece();
+            //if the pieces is ours, set the background green, otherwise set it red
+            select(i * 8 + j, pieceToMove.getColor() == game.getCurrentTurn() ? Color.GREEN : Color.RED);
+            isFirstClick = !isFirstClick;//not first click anymore
+
+            //if is not the first click
+        } else if (!isFirstClick) {
+
+            isFirstClick = !isFirstClick;//set to opposite
+            //if we click our piece on the second click
+            if (game.board[i][j].isOccupied() && game.board[i][j].getPiece().getColor() == game.getCurrentTurn()) {
+                //resets the colors
+                select(-1, null);
+                //recursively calls the method again, this time as a first click
+                squareClicked(i, j);
+                return;
+            }
+            //save the position clicked
+            this.positionToMoveTo = game.board[i][j];
+            //the targets of the piece are already known, only its own pieces have any
+            boolean valid = (targets >>> (i * 8 + j) & 1) != 0;
+            select(-1, null);//clears the highlight
+            if (valid) {
+                play(pieceToMove, positionToMoveTo);
+            }
+        }
+    }
 
+    /**
+     * Plays a move already checked on the worker thread, along with working
+     * out the next moves and looking for the end of the game. Only the
+     * squares that changed are handed back to the event thread.
+     *
+     * @param piece the piece to move
+     * @param to where it moves
+     */
+    private void play(final Piece piece, final Position to) {
+        //if a pawn reaches the other side, ask what to promote it to
+        final int promotion = piece instanceof Pawn && (to.getRow() == 7 || to.getRow() == 0)
+                ? promotionChooser.choose(piece, to) : 0;
+        final long click = clickTime;
+        moves = null;
+        playing = true;
+        worker.submit(new Callable<Played>() {
+            @Override
+            public Played call() {
+                Piece[] before = new Piece[64];
+                for (int i = 0; i < 64; i++) {
+                    before[i] = game.board[i / 8][i % 8].getPiece();
+                }
+                Object event = FlightEvents.start(FlightEvents.Type.MOVE);
+                long started = System.nanoTime();
+                //save any piece that might be removed
+                Piece removed = game.nextTurn(piece, to, promotion);
+                LatencyTrace.NEXT_TURN.record(System.nanoTime() - started);
+                FlightEvents.move(event, game.getHash(), game.getMove(game.getPly() - 1));
+                //for a move the squares moved from and to, and the rook's squares when
+                //castling or the captured pawn's en passant
+                int n = 0;
+                int[] changed = new int[4];
+                for (int i = 0; i < 64 && n < changed.length; i++) {
+                    if (game.board[i / 8][i % 8].getPiece() != before[i]) {
+                        changed[n++] = i;
                     }
                 }
+                Piece[] placed = new Piece[n];
+                for (int k = 0; k < n; k++) {
+                    placed[k] = game.board[changed[k] / 8][changed[k] % 8].getPiece();
+                }
+                started = System.nanoTime();
+                int[] legal = game.legalMoves();
+                LatencyTrace.LEGAL_MOVES.record(System.nanoTime() - started);
+                return new Played(removed, changed, placed, game.getCurrentTurn(), game.isInCheck(),
+                        new Examined(legal, gameOver(game)));
+            }
+        }, new UiWorker.Callback<Played>() {
+            @Override
+            public void done(Played played) {
+                paintPending = click;
+                for (int k = 0; k < played.placed.length; k++) {
+                    shown[played.changed[k]] = played.placed[k];
+                    repaintSquare(played.changed[k]);
+                }
+                //if a piece has been captured, add the piece to the side
+                if (played.removed != null) {
+                    cframe.addRemovedPiece(played.removed);
+                }
+                cframe.setTurnText(played.turn);//let the user know who's turn it is
+                cframe.setCheckText(played.inCheck);//and whether they are in check
+                playing = false;
+                cframe.showEvaluation();//and how the position was rated if it has been analysed
+                cframe.updateAnalysis();//and analyse the new position
+                runAfterMove();
+                examined(played.examined, true);
             }
+        });
+    }
+
+    /**
+     * What is handed back to the event thread after a move
+     */
+    private static final class Played {
+
+        final Piece removed;
+        final int[] changed;
+        final Piece[] placed;
+        final int turn;
+        final boolean inCheck;
+        final Examined examined;
+
+        Played(Piece removed, int[] changed, Piece[] placed, int turn, boolean inCheck, Examined examined) {
+            this.removed = removed;
+            this.changed = changed;
+            this.placed = placed;
+            this.turn = turn;
+            this.inCheck = inCheck;
+            this.examined = examined;
+        }
+    }
+
+    /**
+     * Runs something that reads the game once the move being played has
+     * been shown, or at once if none is
+     *
+     * @param action what to run, on the event thread
+     */
+    void whenIdle(Runnable action) {
+        //a move that failed is never shown, so only one still on the worker is waited for
+        if (playing && worker.isBusy()) {
+            afterMove.add(action);
+        } else {
+            action.run();
         }
     }
 
+    private void runAfterMove() {
+        Runnable[] actions = afterMove.toArray(new Runnable[afterMove.size()]);
+        afterMove.clear();
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    /**
+     * What is worked out about a position in the background
+     */
+    private static final class Examined {
+
+        final int[] moves;
+        final String gameOver;
+
+        Examined(int[] moves, String gameOver) {
+            this.moves = moves;
+            this.gameOver = gameOver;
+        }
+    }
+
+    /**
+     * Works out the legal moves of the position shown and whether the game
+     * is over on the worker thread, then hands them to the event thread
+     *
+     * @param announce whether to tell the user if the game is over
+     */
+    private void examine(final boolean announce) {
+        moves = null;
+        final Game position = game.copy();
+        worker.submit(new Callable<Examined>() {
+            @Override
+            public Examined call() {
+                long started = System.nanoTime();
+                int[] legal = position.legalMoves();
+                LatencyTrace.LEGAL_MOVES.record(System.nanoTime() - started);
+                return new Examined(legal, gameOver(position));
+            }
+        }, new UiWorker.Callback<Examined>() {
+            @Override
+            public void done(Examined examined) {
+                examined(examined, announce);
+            }
+        });
+    }
+
+    /**
+     * Takes what was worked out about the position shown, on the event thread
+     *
+     * @param examined the moves and how the game ended
+     * @param announce whether to tell the user if the game is over
+     */
+    private void examined(Examined examined, boolean announce) {
+        moves = examined.moves;
+        if (announce && examined.gameOver != null) {
+            JOptionPane.showMessageDialog(cframe, examined.gameOver);
+            cframe.reset();//resets the game
+        }
+    }
+
+    /**
+     * Looks for the end of the game, called on the worker thread
+     *
+     * @param position the game, or a copy of it
+     * @return the message telling the user how the game ended, null if it
+     * has not
+     */
+    private static String gameOver(Game position) {
+        long started = System.nanoTime();
+        GameStatus status = position.status();
+        boolean draw = (status == GameStatus.IN_PROGRESS || status == GameStatus.CHECK) && Bitbase.isDraw(position);
+        LatencyTrace.STATUS.record(System.nanoTime() - started);
+        //if the game is in checkmate, let the user know who won the game
+        if (status == GameStatus.CHECKMATE) {
+            return position.getCurrentTurn() == Game.BLACK ? "Checkmate, white wins!" : "Checkmate, black wins!";
+        } else if (status == GameStatus.STALEMATE) {//if the game is in stalemate
+            return "Stalemate, it's a draw!";
+        } else if (status == GameStatus.INSUFFICIENT_MATERIAL) {//if the game is a draw
+            return "Draw by insufficient material.";
+        } else if (status == GameStatus.THREEFOLD_REPETITION) {
+            return "Draw by threefold repetition.";
+        } else if (status == GameStatus.FIFTY_MOVE_RULE) {
+            return "Draw by the fifty-move rule.";
+        } else if (draw) {//if the ending cannot be won by either side
+            return "Draw, neither side can win this ending.";
+        }
+        return null;
+    }
+
+    /**
+     * Drops any result still being worked out, called when the board is
+     * replaced
+     */
+    void cancel() {
+        worker.cancel();
+        playing = false;
+        afterMove.clear();
+    }
+
+    /**
+     * Highlights a square and, if it holds a piece of the side to move, the
+     * squares that piece can move to. Only the squares whose highlight
+     * changes are repainted.
+     *
+     * @param square row * 8 + column, -1 for none
+     * @param color the color to highlight it with
+     */
+    private void select(int square, Color color) {
+        int old = selected;
+        long oldTargets = targets;
+        selected = square;
+        selectedColor = color;
+        targets = 0;
+        if (square >= 0 && moves != null
+                && game.board[square / 8][square % 8].getPiece().getColor() == game.getCurrentTurn()) {
+            //the move list was worked out in the background after the last move
+            for (int move : moves) {
+                if (Move.getFromRow(move) * 8 + Move.getFromCol(move) == square) {
+                    targets |= 1L << (Move.getToRow(move) * 8 + Move.getToCol(move));
+                }
+            }
+        }
+        repaintSquare(old);
+        repaintSquare(square);
+        for (long changed = oldTargets ^ targets; changed != 0; changed &= changed - 1) {
+            repaintSquare(Long.numberOfTrailingZeros(changed));
+        }
+    }
+
+    private void repaintSquare(int square) {
+        if (square >= 0) {
+            repaint(square % 8 * size, (7 - square / 8) * size, size, size);
+        }
+    }
+
+    /**
+     * sets how pawns reaching the other side are promoted
+     * @param promotionChooser the chooser asked before a promotion
+     */
+    public void setPromotionChooser(PromotionChooser promotionChooser) {
+        this.promotionChooser = promotionChooser;
+    }
+
     /**
      * sets the current game
      * @param game the new game to be set
      */
     public void setGame(Game game) {
+        cancel();
         this.game = game;
+        updateBoard();
+        examine(false);
     }
 }
@@ -1,18 +1,28 @@
 package chess.ui;
 
+import chess.db.OpeningBook;
+import chess.engine.AnalysisCache;
+import chess.engine.Search;
+import chess.engine.TranspositionTable;
 import chess.game.Game;
+import chess.game.Journal;
+import chess.game.Move;
 import chess.game.Piece;
+import chess.metrics.FlightEvents;
+import chess.metrics.Metrics;
+import chess.pgn.San;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
 import javax.swing.BorderFactory;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
 
 /**
  * This class deals with the graphical user interface
@@ -21,12 +31,15 @@ import javax.swing.JLabel;
  */
 public final class ChessFrame extends JFrame implements WindowListener {
 
-    protected static Color darkColor = new Color(110, 0, 0);
-    protected static Color lightColor = new Color(255, 255, 255);
+    static final Color DEFAULT_DARK = new Color(110, 0, 0);
+    static final Color DEFAULT_LIGHT = new Color(255, 255, 255);
+    protected Color darkColor = DEFAULT_DARK;
+    protected Color lightColor = DEFAULT_LIGHT;
     protected Color backgroundColor = new Color(0, 0, 0);
     protected Game game;
     protected JLabel currentTurnLbl;
     protected JLabel checkLbl;
+    protected JLabel evalLbl;
     protected JLabel[] letterLbls;
     protected JLabel[] numLbls;
     protected JLabel removedPieceLbl;
@@ -39,6 +52,18 @@ public final class ChessFrame extends JFrame implements WindowListener {
     protected Board gameBoard;
     private ChessMenuBar menuBar;
     private final String SAVE_LOCATION = "src/chess/ui/Game.save";
+    private final String JOURNAL_LOCATION = "src/chess/ui/Game.journal";
+    private final int SNAPSHOT_INTERVAL = 50;
+    private final int SYNC_MILLIS = 1000;
+    private Journal journal;
+    private final String BOOK_LOCATION = "src/chess/ui/book.bin";
+    private OpeningBook book;
+    private final String CACHE_LOCATION = "src/chess/ui/analysis.cache";
+    private final int CACHE_SIZE = 16; // megabytes
+    private final int EVALUATION_TIME = 3000; // milliseconds
+    private AnalysisCache cache;
+    private final int ANALYSIS_WIDTH = 300;
+    private AnalysisPanel analysisPanel;
 
     /**
      * Creates an instance of a ChessFrame.
@@ -51,12 +76,19 @@ public final class ChessFrame extends JFrame implements WindowListener {
         //initializes the gui components
         menuBar = new ChessMenuBar(this);
         game = initGame();//initialize the game
+        book = openBook();
+        cache = openCache();
         gameBoard = new Board(SQUARE_SIZE, game, this);
         currentTurnLbl = new JLabel("");
         checkLbl = new JLabel("");
         checkLbl.setFont(new Font("Calibri", Font.BOLD, 30));
         checkLbl.setForeground(Color.white);
+        evalLbl = new JLabel("");
+        evalLbl.setFont(new Font("Calibri", Font.BOLD, 18));
+        evalLbl.setForeground(Color.white);
         setTurnText(game.getCurrentTurn());
+        setCheckText(game.isInCheck());
+        showEvaluation();
         currentTurnLbl.setFont(new Font("Calibri", Font.BOLD, 23));
         currentTurnLbl.setForeground(lightColor);
         removedPieceLbl = new JLabel();
@@ -96,12 +128,14 @@ public final class ChessFrame extends JFrame implements WindowListener {
         //add the gui components
         add(gameBoard);
         add(checkLbl);
+        add(evalLbl);
         add(currentTurnLbl);
         add(removedPieceLbl);
         //set the bounds of the components
         gameBoard.setBounds(LETTER_NUM_WIDTH, 0, SQUARE_SIZE * 8, SQUARE_SIZE * 8);
         checkLbl.setBounds(754, -21, 200, 100);
         currentTurnLbl.setBounds(705, 10, 200, 100);
+        evalLbl.setBounds(705, 60, 290, 40);
         removedPieceLbl.setBounds(600, 100, 700, 700);
         //set any removed pieces to be displayed
         for (int i = 0; i < game.removed.size(); i++) {
@@ -109,7 +143,7 @@ public final class ChessFrame extends JFrame implements WindowListener {
         }
         setJMenuBar(menuBar);//adds menu bar
         addWindowListener(this);//for window closing
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);//exits when X button is clicked
+        setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);//exits once the game is saved
         setResizable(false);
         getContentPane().setBackground(darkColor);//background
         setVisible(true);
@@ -120,8 +154,13 @@ public final class ChessFrame extends JFrame implements WindowListener {
      */
     public void reset() {
         game = new Game();//new gaem
+        attachJournal();
         this.setTurnText(game.getCurrentTurn());
+        this.setCheckText(game.isInCheck());
+        this.showEvaluation();
+        this.updateAnalysis();
         //remove gameboard an replace with new
+        gameBoard.cancel();
         remove(gameBoard);
         gameBoard = new Board(SQUARE_SIZE, game, this);
         add(gameBoard);
@@ -144,7 +183,7 @@ public final class ChessFrame extends JFrame implements WindowListener {
      */
     public void addRemovedPiece(Piece p) {
         int nImgY = 6;//number of images to be displyed vertically
-        ImagePanel img = new ImagePanel(p.getImagePath());//image of the piece to be added
+        ImagePanel img = new ImagePanel(Sprites.get(p));//image of the piece to be added
         removedPieceLbl.add(img);
         //sets the coordinates
         img.setBounds(removePieceLblX, removePieceLblY, SQUARE_SIZE, SQUARE_SIZE);
@@ -170,68 +209,255 @@ public final class ChessFrame extends JFrame implements WindowListener {
         }
     }
 
-//    public void setCheckLabel(int turn, Piece piece) {
-//        if (piece != null && piece.inCheck(turn)) {
-//            checkLbl.setText("Check!");
-//        } else {
-//            checkLbl.setText("");
-//        }
-//    }
     /**
-     * Initializes the game via the serialization process, if the {@code Game}
-     * cannot be loaded, it returns a new {@code Game}.
+     * Sets the text for the check label
+     *
+     * @param inCheck whether the side to move is in check
+     */
+    public void setCheckText(boolean inCheck) {
+        if (inCheck) {
+            checkLbl.setText("Check!");
+        } else {
+            checkLbl.setText("");
+        }
+    }
+
+    /**
+     * Initializes the game from the save file and the moves journaled since,
+     * if the {@code Game} cannot be loaded, it returns a new {@code Game}.
      *
      * @return The {@code Game} to be played.
      */
     private Game initGame() {
-        Game g = loadGame();
-        return (g == null) ? new Game() : g;
+        journal = new Journal(new File(SAVE_LOCATION), new File(JOURNAL_LOCATION),
+                Journal.SyncPolicy.everyMillis(SYNC_MILLIS), SNAPSHOT_INTERVAL);
+        Object event = FlightEvents.start(FlightEvents.Type.PERSISTENCE);
+        game = journal.recover();
+        FlightEvents.persistence(event, game.getHash(), "load");
+        attachJournal();
+        return game;
     }
 
     /**
-     * Saves the current {@code Game} via the serialization process.
+     * Opens the opening book if there is one. Only the file's header is read,
+     * the rest is mapped and read when it is probed.
+     *
+     * @return the book, or null if there is none
      */
-    private void saveGame() {
-        ObjectOutputStream oos = null;
+    private OpeningBook openBook() {
+        File f = new File(BOOK_LOCATION);
+        if (!f.exists()) {
+            return null;
+        }
         try {
-            oos = new ObjectOutputStream(new FileOutputStream(SAVE_LOCATION));
-            oos.writeObject(game);
-            oos.close();
-        } catch (Exception ex) {
+            return new OpeningBook(f);
+        } catch (IOException ex) {
             System.err.println(ex);
+            return null;
         }
     }
 
     /**
-     * Loads a new game {@code Game} via the serialization process.
+     * Shows the book move for the current position, if any
+     */
+    public void showBookMove() {
+        String text;
+        if (book == null) {
+            text = "There is no opening book.";
+        } else {
+            int move = book.probe(game);
+            text = move == Move.NONE ? "The position is not in the book." : "Book move: " + San.toString(game, move);
+        }
+        JOptionPane.showMessageDialog(this, text, "Book Move", JOptionPane.PLAIN_MESSAGE);
+    }
+
+    /**
+     * Opens the analysis cache, creating it the first time
      *
-     * @return The {@code Game} saved from the previous play, if the game cannot
-     * be loaded it returns null.
+     * @return the cache, or null if it cannot be opened
      */
-    private Game loadGame() {
-        ObjectInputStream ois = null;
-        Game g = null;
+    private AnalysisCache openCache() {
         try {
-            ois = new ObjectInputStream(new FileInputStream(SAVE_LOCATION));
-            g = (Game) ois.readObject();
-            ois.close();
-        } catch (Exception ex) {
+            return new AnalysisCache(new File(CACHE_LOCATION), CACHE_SIZE);
+        } catch (IOException ex) {
+            System.err.println(ex);
             return null;
         }
-        return g;
     }
 
     /**
-     * Triggered when the user closes the window; saves the game
+     * Shows the evaluation of the current position if it has been analysed
+     * before, in this session or an earlier one
+     */
+    public void showEvaluation() {
+        AnalysisCache.Entry entry = cache == null ? null : cache.probe(game.getHash());
+        if (entry == null) {
+            evalLbl.setText("");
+        } else {
+            setEvalText(entry.getScore(), entry.getDepth());
+        }
+    }
+
+    /**
+     * Analyses the current position in the background and shows the result,
+     * which is kept in the analysis cache
+     */
+    public void evaluate() {
+        final Game position = game.copy();
+        evalLbl.setText("Thinking...");
+        new SwingWorker<Search.Result, Void>() {
+            @Override
+            protected Search.Result doInBackground() {
+                Search search = new Search(new TranspositionTable(CACHE_SIZE));
+                search.setCache(cache);
+                return search.search(position, Search.MAX_DEPTH, EVALUATION_TIME, null);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    final Search.Result result = get();
+                    gameBoard.whenIdle(new Runnable() {
+                        @Override
+                        public void run() {
+                            //the user may have moved while it was thinking
+                            if (position.getHash() == game.getHash()) {
+                                setEvalText(result.getScore(), result.getDepth());
+                            } else {
+                                showEvaluation();
+                            }
+                        }
+                    });
+                } catch (InterruptedException | ExecutionException ex) {
+                    System.err.println(ex);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Shows or hides the analysis panel to the right of the frame. While it
+     * is shown the position on the board is analysed whoever's turn it is.
+     */
+    public void toggleAnalysis() {
+        if (analysisPanel == null) {
+            analysisPanel = new AnalysisPanel(darkColor, Color.white);
+            add(analysisPanel);
+            analysisPanel.setBounds(WIDTH, 0, ANALYSIS_WIDTH - 20, SQUARE_SIZE * 8 + LETTER_NUM_WIDTH);
+            setSize(WIDTH + ANALYSIS_WIDTH, HEIGHT);
+            analysisPanel.setPosition(game);
+        } else {
+            analysisPanel.stop();
+            remove(analysisPanel);
+            analysisPanel = null;
+            setSize(WIDTH, HEIGHT);
+        }
+        repaint();
+    }
+
+    /**
+     * Analyses the position on the board from now on, if analysis is shown
+     */
+    public void updateAnalysis() {
+        if (analysisPanel != null) {
+            analysisPanel.setPosition(game);
+        }
+    }
+
+    /**
+     * Shows the best move for the current position at once, as found so far
+     * by the analysis or in an earlier evaluation
+     */
+    public void showHint() {
+        int move = analysisPanel == null ? Move.NONE : analysisPanel.getBestMove();
+        if (move == Move.NONE && cache != null) {
+            AnalysisCache.Entry entry = cache.probe(game.getHash());
+            move = entry == null ? Move.NONE : entry.getMove();
+        }
+        String text;
+        if (move != Move.NONE) {
+            text = "Hint: " + San.toString(game, move);
+        } else if (analysisPanel != null) {
+            text = "Still thinking, try again in a moment.";
+        } else {
+            text = "No hint yet, turn on analysis or evaluate the position.";
+        }
+        JOptionPane.showMessageDialog(this, text, "Hint", JOptionPane.PLAIN_MESSAGE);
+    }
+
+    /**
+     * Sets the text for the evaluation label, from white's point of view
+     *
+     * @param score the score for the side to move
+     * @param depth how deep it was searched
+     */
+    private void setEvalText(int score, int depth) {
+        if (game.getCurrentTurn() == Game.BLACK) {
+            score = -score;
+        }
+        String text;
+        if (Math.abs(score) >= Search.MATE - Search.MAX_DEPTH) {
+            int moves = (Search.MATE - Math.abs(score) + 1) / 2;
+            text = (score > 0 ? "White" : "Black") + " mates in " + moves;
+        } else {
+            text = String.format("Eval: %+.2f", score / 100.0);
+        }
+        evalLbl.setText(text + " (depth " + depth + ")");
+    }
+
+    /**
+     * Starts journaling the current {@code Game}, every move is saved as it
+     * is played.
+     */
+    private void attachJournal() {
+        try {
+            journal.attach(game);
+        } catch (IOException ex) {
+            System.err.println(ex);
+        }
+    }
+
+    /**
+     * Triggered when the user closes the window; saves the game, after the
+     * move being played if there is one, and exits
      *
      * @param e
      */
     @Override
     public void windowClosing(WindowEvent e) {
-        saveGame();
+        gameBoard.whenIdle(new Runnable() {
+            @Override
+            public void run() {
+                save();
+                System.exit(0);
+            }
+        });
+    }
+
+    /**
+     * Writes the final snapshot and closes the files
+     */
+    private void save() {
+        if (analysisPanel != null) {
+            analysisPanel.stop();
+        }
+        try {
+            Object event = FlightEvents.start(FlightEvents.Type.PERSISTENCE);
+            journal.close();
+            FlightEvents.persistence(event, game.getHash(), "save");
+            if (book != null) {
+                book.close();
+            }
+            if (cache != null) {
+                cache.close();
+            }
+        } catch (IOException ex) {
+            System.err.println(ex);
+        }
     }
 
     public static void main(String args[]) {
+        Metrics.register();
         new ChessFrame();//creates a new chessframe
     }
 
@@ -6,12 +6,18 @@ package chess.ui;
 
 import java.awt.Color;
 import java.awt.Component;
+import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
 import javax.swing.JButton;
 import javax.swing.JColorChooser;
+import javax.swing.JFileChooser;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
+import javax.swing.JOptionPane;
+import javax.swing.JTextArea;
 
 /**
  * This class creates a small menu bar
@@ -25,6 +31,14 @@ public final class ChessMenuBar extends JMenuBar implements ActionListener {
     private JButton lightColorBtn;
     private JButton darkColorBtn;
     private JButton resetBtn;
+    private JButton bookBtn;
+    private JButton evaluateBtn;
+    private JButton analysisBtn;
+    private JButton hintBtn;
+    private JMenu debugMenu;
+    private JButton showLatencyBtn;
+    private JButton dumpLatencyBtn;
+    private JButton resetLatencyBtn;
     private ChessFrame frame;
 
     /**
@@ -40,8 +54,23 @@ public final class ChessMenuBar extends JMenuBar implements ActionListener {
         lightColorBtn = new JButton("Choose light color");
         darkColorBtn = new JButton("Choose dark color");
         resetBtn = new JButton("Reset");
+        bookBtn = new JButton("Book Move");
+        evaluateBtn = new JButton("Evaluate");
+        analysisBtn = new JButton("Analysis");
+        hintBtn = new JButton("Hint");
+        debugMenu = new JMenu("Debug");
+        showLatencyBtn = new JButton("Show latencies");
+        dumpLatencyBtn = new JButton("Dump latencies to file");
+        resetLatencyBtn = new JButton("Reset latencies");
         //adds actions to the buttons
+        showLatencyBtn.addActionListener(this);
+        dumpLatencyBtn.addActionListener(this);
+        resetLatencyBtn.addActionListener(this);
         resetBtn.addActionListener(this);
+        bookBtn.addActionListener(this);
+        evaluateBtn.addActionListener(this);
+        analysisBtn.addActionListener(this);
+        hintBtn.addActionListener(this);
         lightColorBtn.addActionListener(this);
         darkColorBtn.addActionListener(this);
         //adds the color buttons to the color menu
@@ -49,7 +78,16 @@ public final class ChessMenuBar extends JMenuBar implements ActionListener {
         colorMenu.add(darkColorBtn);
         //adds the button and menu to the main bar
         add(resetBtn);
+        add(bookBtn);
+        add(evaluateBtn);
+        add(analysisBtn);
+        add(hintBtn);
         add(colorMenu);
+        //adds the debug buttons to the debug menu
+        debugMenu.add(showLatencyBtn);
+        debugMenu.add(dumpLatencyBtn);
+        debugMenu.add(resetLatencyBtn);
+        add(debugMenu);
     }
 
     /**
@@ -62,20 +100,65 @@ public final class ChessMenuBar extends JMenuBar implements ActionListener {
         //if the light color button is pressed
         if (e.getSource() == lightColorBtn) {
             //displays a popup with an array of colors to choose from
-            Color c = JColorChooser.showDialog(((Component) e.getSource()).getParent(), "Colours", ChessFrame.lightColor);
+            Color c = JColorChooser.showDialog(((Component) e.getSource()).getParent(), "Colours", frame.lightColor);
             //sets the board's light color
             frame.gameBoard.setLightColor(c);
             //sets current turn label
             frame.currentTurnLbl.setForeground(c);
         } else if (e.getSource() == darkColorBtn) {//if the dark button is pressed
             //displays a popup with an array of colors to choose from
-            Color c = JColorChooser.showDialog(((Component) e.getSource()).getParent(), "Colours", ChessFrame.darkColor);
+            Color c = JColorChooser.showDialog(((Component) e.getSource()).getParent(), "Colours", frame.darkColor);
             //sets the board's light color
             frame.gameBoard.setDarkColor(c);
             //sets current turn label
             frame.getContentPane().setBackground(c);
-        } else if (e.getSource() == resetBtn) {//if the reset button is pressed
+        } else if (e.getSource() == resetBtn || e.getSource() == bookBtn || e.getSource() == evaluateBtn
+                || e.getSource() == analysisBtn || e.getSource() == hintBtn) {
+            //these read the game, which must wait for a move being played
+            final Object source = e.getSource();
+            frame.gameBoard.whenIdle(new Runnable() {
+                @Override
+                public void run() {
+                    gameAction(source);
+                }
+            });
+        } else if (e.getSource() == showLatencyBtn) {//if the show latencies button is pressed
+            JTextArea text = new JTextArea(LatencyTrace.summary());
+            text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            text.setEditable(false);
+            JOptionPane.showMessageDialog(frame, text, "Latencies (ms)", JOptionPane.PLAIN_MESSAGE);
+        } else if (e.getSource() == dumpLatencyBtn) {//if the dump button is pressed
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new File("latency.txt"));
+            if (chooser.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION) {
+                try {
+                    LatencyTrace.dump(chooser.getSelectedFile());
+                } catch (IOException ex) {
+                    System.err.println(ex);
+                    JOptionPane.showMessageDialog(frame, "Could not write " + chooser.getSelectedFile());
+                }
+            }
+        } else if (e.getSource() == resetLatencyBtn) {//if the reset latencies button is pressed
+            LatencyTrace.reset();
+        }
+    }
+
+    /**
+     * Carries out a button that reads the game
+     *
+     * @param source the button pressed
+     */
+    private void gameAction(Object source) {
+        if (source == resetBtn) {//if the reset button is pressed
             frame.reset();//reset the frame
+        } else if (source == bookBtn) {//if the book move button is pressed
+            frame.showBookMove();
+        } else if (source == evaluateBtn) {//if the evaluate button is pressed
+            frame.evaluate();
+        } else if (source == analysisBtn) {//if the analysis button is pressed
+            frame.toggleAnalysis();
+        } else if (source == hintBtn) {//if the hint button is pressed
+            frame.showHint();
         }
     }
 }
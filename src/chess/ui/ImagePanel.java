@@ -14,7 +14,6 @@ public class ImagePanel extends JComponent {
     //VARIABLES
     private final int SIZE = 1;
     private Image thumbNail;
-    private String imagePath = null;
 
     /**
      * main constructor to create the desired image's file paths
@@ -22,14 +21,28 @@ public class ImagePanel extends JComponent {
      * @param imagePath the location of the image's folder
      */
     public ImagePanel(String imagePath) {
-        this.imagePath = imagePath;
+        //the image is read once here, not on every paint
+        this(imagePath.isEmpty() ? null : new ImageIcon(imagePath).getImage());
+    }
+
+    /**
+     * creates an empty panel
+     */
+    public ImagePanel() {
+    }
+
+    /**
+     * creates a panel showing an image already loaded, ex from {@code Sprites}
+     *
+     * @param image the image, or null for an empty panel
+     */
+    public ImagePanel(Image image) {
+        thumbNail = image;
     }
 
     //draws the image
     @Override
     protected void paintComponent(Graphics g) {
-        //creates the image and draws it
-        thumbNail = Toolkit.getDefaultToolkit().getImage(imagePath);
         if (thumbNail != null) {
             g.drawImage(thumbNail, SIZE, SIZE, this);
         }
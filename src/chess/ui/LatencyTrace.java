@@ -0,0 +1,80 @@
+package chess.ui;
+
+import chess.metrics.LatencyHistogram;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Date;
+
+/**
+ * Times each step from a click on the board to the board painted after the
+ * move, so the cost of the rules can be told apart from the cost of Swing.
+ * The steps overlap: the whole includes the time waiting in queues.
+ *
+ * @author Jurgen Aliaj
+ */
+final class LatencyTrace {
+
+    /**
+     * working out the legal moves after a move, on the worker thread
+     */
+    static final LatencyHistogram LEGAL_MOVES = new LatencyHistogram("legalMoves");
+    /**
+     * playing the move on the game, on the event thread
+     */
+    static final LatencyHistogram NEXT_TURN = new LatencyHistogram("nextTurn");
+    /**
+     * looking for the end of the game, on the worker thread
+     */
+    static final LatencyHistogram STATUS = new LatencyHistogram("status");
+    /**
+     * one call to paint the board
+     */
+    static final LatencyHistogram PAINT = new LatencyHistogram("paint");
+    /**
+     * from the mouse press to the end of the first paint showing the move
+     */
+    static final LatencyHistogram CLICK_TO_PAINT = new LatencyHistogram("click to paint");
+    private static final LatencyHistogram[] ALL = {LEGAL_MOVES, NEXT_TURN, STATUS, PAINT, CLICK_TO_PAINT};
+
+    private LatencyTrace() {
+    }
+
+    /**
+     * Describes every step, one per line
+     *
+     * @return the summary, times in milliseconds
+     */
+    static String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (LatencyHistogram h : ALL) {
+            sb.append(h).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Empties every histogram
+     */
+    static void reset() {
+        for (LatencyHistogram h : ALL) {
+            h.reset();
+        }
+    }
+
+    /**
+     * Adds the summary to the end of a file
+     *
+     * @param f the file
+     * @throws IOException if the file cannot be written
+     */
+    static void dump(File f) throws IOException {
+        try (PrintStream out = new PrintStream(new FileOutputStream(f, true), false, "UTF-8")) {
+            out.println("# " + new Date() + ", " + System.getProperty("os.name") + ", "
+                    + Runtime.getRuntime().availableProcessors() + " cpus, times in ms");
+            out.print(summary());
+            out.println();
+        }
+    }
+}
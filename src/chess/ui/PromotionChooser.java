@@ -0,0 +1,22 @@
+package chess.ui;
+
+import chess.game.Piece;
+import chess.game.Position;
+
+/**
+ * Decides which piece a pawn reaching the other side is promoted to. The
+ * rules code never asks, the board asks its chooser before the move is made.
+ *
+ * @author Jurgen Aliaj
+ */
+public interface PromotionChooser {
+
+    /**
+     * Chooses the piece to promote to
+     *
+     * @param pawn the pawn being promoted
+     * @param newPos the square it moves to
+     * @return the type of piece, ex {@code Piece.QUEEN}
+     */
+    int choose(Piece pawn, Position newPos);
+}
@@ -0,0 +1,46 @@
+package chess.ui;
+
+import chess.game.Piece;
+import chess.game.Position;
+import java.awt.Component;
+import javax.swing.JOptionPane;
+
+/**
+ * Asks the user which piece to promote to, a queen if the dialog is closed.
+ *
+ * @author Jurgen Aliaj
+ */
+public class PromotionDialog implements PromotionChooser {
+
+    private static final String[] NAMES = {"Queen", "Rook", "Bishop", "Knight"};
+    private static final int[] TYPES = {Piece.QUEEN, Piece.ROOK, Piece.BISHOP, Piece.KNIGHT};
+    private final Component parent;
+
+    /**
+     * Creates a chooser
+     *
+     * @param parent the component the dialog is shown over
+     */
+    public PromotionDialog(Component parent) {
+        this.parent = parent;
+    }
+
+    @Override
+    public int choose(Piece pawn, Position newPos) {
+        //show an option dialogue of options and save the user's choice
+        String s = (String) JOptionPane.showInputDialog(
+                parent,
+                "Which piece would you like?",
+                "Pawn Promotion",
+                JOptionPane.PLAIN_MESSAGE,
+                null,
+                NAMES,
+                NAMES[0]);
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equals(s)) {
+                return TYPES[i];
+            }
+        }
+        return Piece.QUEEN;
+    }
+}
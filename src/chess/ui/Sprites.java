@@ -0,0 +1,79 @@
+package chess.ui;
+
+import chess.game.Game;
+import chess.game.Piece;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.imageio.ImageIO;
+
+/**
+ * The images of the pieces, read from the classpath and scaled to the size of
+ * a square once, when the class is loaded. Painting only looks them up in an
+ * array.
+ *
+ * @author Jurgen Aliaj
+ */
+public final class Sprites {
+
+    private static final String[] NAMES = {null, "pawn", "knight", "bishop", "rook", "queen", "king"};
+    /**
+     * images indexed by color then type, null for type 0 or an image that
+     * could not be read
+     */
+    private static final BufferedImage[][] IMAGES = new BufferedImage[2][NAMES.length];
+
+    static {
+        for (int color = Game.WHITE; color <= Game.BLACK; color++) {
+            for (int type = Piece.PAWN; type <= Piece.KING; type++) {
+                String path = "/chess/images/" + (color == Game.WHITE ? "w_" : "b_") + NAMES[type] + "70.png";
+                try (InputStream in = Sprites.class.getResourceAsStream(path)) {
+                    if (in == null) {
+                        throw new IOException("Missing image " + path);
+                    }
+                    IMAGES[color][type] = scale(ImageIO.read(in), ChessFrame.SQUARE_SIZE);
+                } catch (IOException ex) {
+                    System.err.println(ex);
+                }
+            }
+        }
+    }
+
+    private Sprites() {
+    }
+
+    /**
+     * Gets the image of a piece
+     *
+     * @param color {@code Game.WHITE} or {@code Game.BLACK}
+     * @param type the type of piece, ex {@code Piece.ROOK}
+     * @return the image, or null if it could not be read
+     */
+    public static BufferedImage get(int color, int type) {
+        return IMAGES[color][type];
+    }
+
+    /**
+     * Gets the image of a piece
+     *
+     * @param p the piece
+     * @return the image, or null if it could not be read
+     */
+    public static BufferedImage get(Piece p) {
+        return IMAGES[p.getColor()][p.getType()];
+    }
+
+    /**
+     * Copies an image into a compatible one of the given size
+     */
+    private static BufferedImage scale(BufferedImage image, int size) {
+        BufferedImage result = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = result.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, size, size, null);
+        g.dispose();
+        return result;
+    }
+}
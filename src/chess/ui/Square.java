@@ -20,18 +20,18 @@ public class Square extends JPanel {
         this.size = size;
         this.pos = pos;
         if (color == Game.BLACK) {
-            setBackground(ChessFrame.darkColor);
+            setBackground(ChessFrame.DEFAULT_DARK);
         } else {
-            setBackground(ChessFrame.lightColor);
+            setBackground(ChessFrame.DEFAULT_LIGHT);
         }
     }
 
     @Override
     public void paint(Graphics g) {
         if (color == Game.BLACK) {
-            g.setColor(ChessFrame.darkColor);
+            g.setColor(ChessFrame.DEFAULT_DARK);
         } else {
-            g.setColor(ChessFrame.lightColor);
+            g.setColor(ChessFrame.DEFAULT_LIGHT);
         }
         g.fillRect(x, y, size, size);
     }
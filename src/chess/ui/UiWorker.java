@@ -0,0 +1,101 @@
+package chess.ui;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import javax.swing.SwingUtilities;
+
+/**
+ * Runs work for a component off the event dispatch thread and hands the
+ * result back on it. Only the latest task of a worker counts: starting
+ * another one or cancelling drops the result of the one pending, even if it
+ * has already finished. Every method must be called on the event dispatch
+ * thread.
+ *
+ * @author Jurgen Aliaj
+ */
+final class UiWorker {
+
+    //shared by every worker, so boards replaced on reset do not leave threads behind
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "ui-worker");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    private int generation;
+    private Future<?> pending;
+
+    /**
+     * Receives the result of a task on the event dispatch thread
+     *
+     * @param <T> the type of the result
+     */
+    interface Callback<T> {
+
+        void done(T result);
+    }
+
+    /**
+     * Starts a task, cancelling the one pending
+     *
+     * @param task the work to do in the background, which must not touch
+     * anything shown on screen
+     * @param callback given the result, unless the task was cancelled
+     */
+    <T> void submit(final Callable<T> task, final Callback<T> callback) {
+        cancel();
+        final int submitted = generation;
+        pending = EXECUTOR.submit(new Runnable() {
+            @Override
+            public void run() {
+                T value = null;
+                boolean failed = false;
+                try {
+                    value = task.call();
+                } catch (Exception ex) {
+                    System.err.println(ex);
+                    failed = true;
+                }
+                final T result = value;
+                final boolean ok = !failed;
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        //a result from before the last cancel is stale
+                        if (submitted == generation) {
+                            pending = null;
+                            if (ok) {
+                                callback.done(result);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Cancels the task pending, if any, so its result is never delivered
+     */
+    void cancel() {
+        generation++;
+        if (pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+    }
+
+    /**
+     * Tells whether a task has been started and its result not yet delivered
+     *
+     * @return whether the worker is busy
+     */
+    boolean isBusy() {
+        return pending != null;
+    }
+}
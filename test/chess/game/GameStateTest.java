@@ -0,0 +1,180 @@
+package chess.game;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Plays games and checks that what the game keeps up to date after each move
+ * agrees with working it out again from the board.
+ *
+ * @author Jurgen Aliaj
+ */
+public class GameStateTest {
+
+    private static final int GAMES = 200;
+    private static final int MAX_PLIES = 200;
+
+    /**
+     * Gets a square written as ex "e4"
+     */
+    static Position square(Game game, String name) {
+        return game.board[name.charAt(1) - '1'][name.charAt(0) - 'a'];
+    }
+
+    /**
+     * Plays moves written as squares, ex "e2e4", comparing the check flag
+     * with a full test after each one
+     *
+     * @return a + for each move that gives check and a - for the others
+     */
+    static String play(Game game, String moves) {
+        StringBuilder checks = new StringBuilder();
+        for (String move : moves.split(" ")) {
+            Position from = square(game, move.substring(0, 2));
+            Position to = square(game, move.substring(2));
+            assertTrue(move, from.getPiece().isValidMove(to));
+            game.nextTurn(from.getPiece(), to);
+            int turn = game.getCurrentTurn();
+            assertEquals(move, game.getKingPosition(turn).getPiece().inCheck(turn), game.isInCheck());
+            checks.append(game.isInCheck() ? '+' : '-');
+        }
+        return checks.toString();
+    }
+
+    /**
+     * Plays random legal moves until the game ends or runs long
+     */
+    private static void playRandom(Random random, Game game, Check check) {
+        for (int ply = 0; ply < MAX_PLIES && !game.status().isGameOver(); ply++) {
+            int[] moves = game.legalMoves();
+            game.makeMove(moves[random.nextInt(moves.length)]);
+            check.after(game);
+        }
+    }
+
+    /**
+     * What is checked after every move
+     */
+    private interface Check {
+
+        void after(Game game);
+    }
+
+    //trying moves must leave the board as it was, or random games go wrong
+    @Test
+    public void checkMatchesFullTest() {
+        Random random = new Random(27);
+        for (int i = 0; i < GAMES; i++) {
+            playRandom(random, new Game(), new Check() {
+                @Override
+                public void after(Game game) {
+                    int turn = game.getCurrentTurn();
+                    assertEquals(game.toFen(), game.getKingPosition(turn).getPiece().inCheck(turn), game.isInCheck());
+                }
+            });
+        }
+    }
+
+    //a position set up from its FEN has its hash worked out from scratch
+    @Test
+    public void hashMatchesRecomputed() {
+        Random random = new Random(29);
+        for (int i = 0; i < GAMES; i++) {
+            playRandom(random, new Game(), new Check() {
+                @Override
+                public void after(Game game) {
+                    assertEquals(game.toFen(), Game.fromFen(game.toFen()).getHash(), game.getHash());
+                    assertEquals(game.getHash(), game.copy().getHash());
+                }
+            });
+        }
+    }
+
+    //one game is copied into over and over, as the search does for each ply
+    @Test
+    public void copyFromReusesGame() {
+        Random random = new Random(26);
+        final Game kept = new Game();
+        for (int i = 0; i < GAMES; i++) {
+            playRandom(random, new Game(), new Check() {
+                @Override
+                public void after(Game game) {
+                    kept.copyFrom(game);
+                    assertEquals(game.toFen(), kept.toFen());
+                    assertEquals(game.getHash(), kept.getHash());
+                    assertEquals(game.removed.size(), kept.removed.size());
+                    for (Piece p : kept.pieces) {
+                        assertEquals(p, p.getPosition().getPiece());
+                    }
+                    //the copied pieces must move as the originals would
+                    int[] moves = game.legalMoves();
+                    if (moves.length > 0) {
+                        Game fresh = game.copy();
+                        fresh.makeMove(moves[0]);
+                        kept.makeMove(moves[0]);
+                        assertEquals(fresh.toFen(), kept.toFen());
+                        assertEquals(fresh.getHash(), kept.getHash());
+                    }
+                }
+            });
+        }
+    }
+
+    @Test
+    public void fenRoundTrip() {
+        Random random = new Random(32);
+        for (int i = 0; i < GAMES; i++) {
+            playRandom(random, new Game(), new Check() {
+                @Override
+                public void after(Game game) {
+                    String fen = game.toFen();
+                    Game back = Game.fromFen(fen);
+                    assertEquals(fen, back.toFen());
+                    assertEquals(fen, game.isInCheck(), back.isInCheck());
+                    assertEquals(fen, game.getCastlingRights(), back.getCastlingRights());
+                    assertEquals(fen, game.getHalfmoveClock(), back.getHalfmoveClock());
+                    //the moves are generated from the board, so they show any piece set up wrongly
+                    assertEquals(fen, game.legalMoves().length, back.legalMoves().length);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void directCheck() {
+        assertEquals("--+-+-", play(new Game(), "e2e4 f7f6 d1h5 g7g6 h5g6 h7g6"));
+    }
+
+    //the knight steps off the diagonal of the bishop behind it
+    @Test
+    public void discoveredCheck() {
+        assertEquals("----------+-", play(new Game(),
+                "e2e4 d7d5 g1f3 a7a6 f3e5 a6a5 e5c6 a5a4 f1b5 a4a3 c6e5 c7c6"));
+    }
+
+    @Test
+    public void castling() {
+        assertEquals("-------", play(new Game(), "e2e4 e7e5 g1f3 b8c6 f1c4 g8f6 e1g1"));
+    }
+
+    @Test
+    public void checkmate() {
+        Game game = new Game();
+        play(game, "f2f3 e7e5 g2g4");
+        assertEquals(GameStatus.IN_PROGRESS, game.status());
+        play(game, "d8h4");
+        assertEquals(GameStatus.CHECKMATE, game.status());
+    }
+
+    //the shortest known stalemate, by Sam Loyd
+    @Test
+    public void stalemate() {
+        Game game = new Game();
+        play(game, "e2e3 a7a5 d1h5 a8a6 h5a5 h7h5 h2h4 a6h6 a5c7 f7f6 c7d7");
+        assertEquals(GameStatus.CHECK, game.status());
+        play(game, "e8f7 d7b7 d8d3 b7b8 d3h7 b8c8 f7g6 c8e6");
+        assertEquals(GameStatus.STALEMATE, game.status());
+    }
+}
@@ -0,0 +1,83 @@
+package chess.game;
+
+import static org.junit.Assert.assertEquals;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Journals games and rebuilds them from the files, as after a crash.
+ *
+ * @author Jurgen Aliaj
+ */
+public class JournalTest {
+
+    private File saveFile;
+    private File journalFile;
+
+    @Before
+    public void createFiles() throws IOException {
+        saveFile = File.createTempFile("journal", ".save");
+        journalFile = File.createTempFile("journal", ".journal");
+    }
+
+    @After
+    public void deleteFiles() {
+        saveFile.delete();
+        journalFile.delete();
+        new File(saveFile.getPath() + ".tmp").delete();
+    }
+
+    /**
+     * Plays random legal moves until the game ends or runs long
+     */
+    private static void playRandom(Random random, Game game, int plies) {
+        for (int ply = 0; ply < plies && !game.status().isGameOver(); ply++) {
+            int[] moves = game.legalMoves();
+            game.makeMove(moves[random.nextInt(moves.length)]);
+        }
+    }
+
+    private void recovers(Journal.SyncPolicy policy, int snapshotInterval) throws IOException {
+        Random random = new Random(31);
+        Journal journal = new Journal(saveFile, journalFile, policy, snapshotInterval);
+        Game game = new Game();
+        journal.attach(game);
+        playRandom(random, game, 120);
+        //the moves are written in the background, forcing waits for them
+        journal.sync();
+        Game recovered = new Journal(saveFile, journalFile, policy, snapshotInterval).recover();
+        assertEquals(game.toFen(), recovered.toFen());
+        assertEquals(game.getHash(), recovered.getHash());
+        journal.close();
+    }
+
+    @Test
+    public void recoversEveryMove() throws IOException {
+        recovers(Journal.SyncPolicy.everyMove(), 0);
+    }
+
+    @Test
+    public void recoversAcrossSnapshots() throws IOException {
+        recovers(Journal.SyncPolicy.everyMillis(50), 7);
+    }
+
+    //moves played on a game that is no longer attached are not recorded
+    @Test
+    public void attachStartsAgain() throws IOException {
+        Random random = new Random(32);
+        Journal journal = new Journal(saveFile, journalFile, Journal.SyncPolicy.never(), 0);
+        Game first = new Game();
+        journal.attach(first);
+        playRandom(random, first, 20);
+        Game second = new Game();
+        journal.attach(second);
+        playRandom(random, first, 20);
+        playRandom(random, second, 20);
+        journal.close();
+        assertEquals(second.toFen(), new Journal(saveFile, journalFile, Journal.SyncPolicy.never(), 0).recover().toFen());
+    }
+}
@@ -0,0 +1,71 @@
+package chess.game;
+
+import static chess.game.GameStateTest.play;
+import static chess.game.GameStateTest.square;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Checks the move rules that {@code isValidMove} tries out on the board, and
+ * that trying a move leaves the board as it was.
+ *
+ * @author Jurgen Aliaj
+ */
+public class MoveRulesTest {
+
+    @Test
+    public void enPassant() {
+        Game game = new Game();
+        play(game, "e2e4 a7a6 e4e5 d7d5");
+        Piece pawn = square(game, "e5").getPiece();
+        Piece taken = square(game, "d5").getPiece();
+        assertTrue(pawn.isValidMove(square(game, "d6")));
+        //the trial puts the taken pawn back where it was
+        assertEquals(taken, square(game, "d5").getPiece());
+        assertNull(square(game, "d6").getPiece());
+        assertEquals(32, game.pieces.size());
+        game.nextTurn(pawn, square(game, "d6"));
+        assertEquals(pawn, square(game, "d6").getPiece());
+        assertNull(square(game, "d5").getPiece());
+        assertTrue(game.removed.contains(taken));
+        assertEquals(31, game.pieces.size());
+    }
+
+    //the pawn beside has just moved two squares, but it is a friendly one
+    @Test
+    public void noEnPassantOfOwnPawn() {
+        Game game = new Game();
+        play(game, "d2d4 e7e5 e2e4 a7a6");
+        Piece own = square(game, "e4").getPiece();
+        Piece taken = square(game, "e5").getPiece();
+        assertTrue(square(game, "d4").getPiece().isValidMove(square(game, "e5")));
+        assertEquals(own, square(game, "e4").getPiece());
+        assertEquals(32, game.pieces.size());
+        play(game, "d4e5");
+        assertEquals(own, square(game, "e4").getPiece());
+        assertTrue(game.removed.contains(taken));
+        assertEquals(31, game.pieces.size());
+    }
+
+    //the knight on c3 is pinned to its king by the bishop on b4
+    @Test
+    public void pinnedPiece() {
+        Game game = new Game();
+        assertEquals("---+--", play(game, "e2e4 e7e6 d2d3 f8b4 b1c3 g8f6"));
+        Piece knight = square(game, "c3").getPiece();
+        assertFalse(knight.isValidMove(square(game, "d5")));
+        assertFalse(knight.isValidMove(square(game, "e2")));
+        assertFalse(knight.isValidMove(square(game, "b5")));
+        assertEquals(knight, square(game, "c3").getPiece());
+        assertEquals(knight.getPosition(), square(game, "c3"));
+        assertEquals(32, game.pieces.size());
+        //other pieces may still move, and may take the pinning bishop
+        assertTrue(square(game, "c1").getPiece().isValidMove(square(game, "d2")));
+        assertTrue(square(game, "a2").getPiece().isValidMove(square(game, "a3")));
+        play(game, "a2a3 a7a6 a3b4");
+        assertEquals(31, game.pieces.size());
+    }
+}
@@ -0,0 +1,62 @@
+package chess.game;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Counts the positions reached from well known test positions, to check
+ * move generation against the published counts. Every move is played
+ * through {@code makeMove}, so the legality checks are tested as well.
+ *
+ * @author Jurgen Aliaj
+ */
+public class PerftTest {
+
+    /**
+     * Counts the positions a given number of plies ahead
+     */
+    static long perft(Game game, int depth) {
+        int[] moves = game.legalMoves();
+        if (depth == 1) {
+            return moves.length;
+        }
+        long n = 0;
+        for (int move : moves) {
+            Game child = game.copy();
+            child.makeMove(move);
+            n += perft(child, depth - 1);
+        }
+        return n;
+    }
+
+    @Test
+    public void startingPosition() {
+        assertEquals(197281, perft(new Game(), 4));
+    }
+
+    //castling, en passant and promotions through the middle game
+    @Test
+    public void kiwipete() {
+        Game game = Game.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        assertEquals(97862, perft(game, 3));
+    }
+
+    //pins and checks along the ranks, en passant that uncovers the king
+    @Test
+    public void rookEnding() {
+        Game game = Game.fromFen("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1");
+        assertEquals(674624, perft(game, 5));
+    }
+
+    @Test
+    public void promotionsAndCastling() {
+        Game game = Game.fromFen("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1");
+        assertEquals(9467, perft(game, 3));
+    }
+
+    @Test
+    public void promotionWithCheck() {
+        Game game = Game.fromFen("rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8");
+        assertEquals(62379, perft(game, 3));
+    }
+}
@@ -0,0 +1,161 @@
+package chess.game;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Writes games with {@code GameWriter} and reads them back with
+ * {@code GameReader}, and reads saves made with Java serialization by
+ * older versions.
+ *
+ * @author Jurgen Aliaj
+ */
+public class SaveFormatTest {
+
+    /**
+     * Plays a random game of up to a given length
+     */
+    private static Game randomGame(Random random, Game game, int plies) {
+        for (int ply = 0; ply < plies && !game.status().isGameOver(); ply++) {
+            int[] moves = game.legalMoves();
+            game.makeMove(moves[random.nextInt(moves.length)]);
+        }
+        return game;
+    }
+
+    private static byte[] write(Game game) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GameWriter writer = new GameWriter(bytes);
+        writer.write(game);
+        writer.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Checks that two games are in the same state and have the same moves
+     */
+    private static void assertSameGame(Game expected, Game actual) {
+        assertSamePosition(expected, actual);
+        assertEquals(expected.isInCheck(), actual.isInCheck());
+        assertEquals(expected.status(), actual.status());
+        assertEquals(expected.removed.size(), actual.removed.size());
+        assertEquals(expected.getPly(), actual.getPly());
+        for (int i = expected.getStartPly(); i < expected.getPly(); i++) {
+            assertEquals(expected.getMove(i), actual.getMove(i));
+        }
+    }
+
+    /**
+     * Checks that two games have the same pieces on the same squares and the
+     * same state
+     */
+    private static void assertSamePosition(Game expected, Game actual) {
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                Piece e = expected.board[row][col].getPiece(), a = actual.board[row][col].getPiece();
+                assertEquals(e == null, a == null);
+                if (e != null) {
+                    assertEquals(e.getType(), a.getType());
+                    assertEquals(e.getColor(), a.getColor());
+                }
+            }
+        }
+        assertEquals(expected.getCurrentTurn(), actual.getCurrentTurn());
+        assertEquals(expected.getCastlingRights(), actual.getCastlingRights());
+        assertEquals(expected.getEnPassantCol(), actual.getEnPassantCol());
+        assertEquals(expected.getHalfmoveClock(), actual.getHalfmoveClock());
+        assertEquals(expected.getHash(), actual.getHash());
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        Random random = new Random(30);
+        for (int i = 0; i < 100; i++) {
+            Game game = randomGame(random, new Game(), 200);
+            assertSameGame(game, GameReader.load(new ByteArrayInputStream(write(game))));
+        }
+    }
+
+    @Test
+    public void roundTripFromPosition() throws IOException {
+        Random random = new Random(31);
+        for (int i = 0; i < 50; i++) {
+            Game game = randomGame(random, Game.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"), 60);
+            assertSameGame(game, GameReader.load(new ByteArrayInputStream(write(game))));
+        }
+    }
+
+    @Test
+    public void manyGamesInOneStream() throws IOException {
+        Random random = new Random(32);
+        List<Game> games = new ArrayList<>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GameWriter writer = new GameWriter(bytes);
+        for (int i = 0; i < 20; i++) {
+            Game game = randomGame(random, new Game(), 100);
+            games.add(game);
+            writer.write(game);
+        }
+        writer.close();
+        GameReader reader = new GameReader(new ByteArrayInputStream(bytes.toByteArray()));
+        for (Game game : games) {
+            assertSameGame(game, reader.read());
+        }
+        assertNull(reader.read());
+    }
+
+    @Test
+    public void positionOnly() throws IOException {
+        Random random = new Random(33);
+        for (int i = 0; i < 50; i++) {
+            Game game = randomGame(random, new Game(), 150);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            GameWriter writer = new GameWriter(bytes);
+            writer.writePosition(game);
+            writer.close();
+            Game back = GameReader.load(new ByteArrayInputStream(bytes.toByteArray()));
+            assertSamePosition(game, back);
+            assertEquals(game.status(), back.status());
+        }
+    }
+
+    //a save made with Java serialization by the version before the binary format
+    @Test
+    public void legacySave() throws IOException {
+        try (InputStream in = SaveFormatTest.class.getResourceAsStream("legacy.save")) {
+            Game game = GameReader.load(in);
+            //white has played e2e4
+            Game expected = new Game();
+            expected.makeMove(Move.parse("e2e4"));
+            assertSamePosition(expected, game);
+            game.makeMove(Move.parse("e7e5"));
+            assertSameGame(game, GameReader.load(new ByteArrayInputStream(write(game))));
+        }
+    }
+
+    @Test
+    public void legacySaveOfPlayedGame() throws IOException {
+        Random random = new Random(34);
+        for (int i = 0; i < 20; i++) {
+            Game game = randomGame(random, new Game(), 100);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(game);
+            }
+            Game legacy = GameReader.load(new ByteArrayInputStream(bytes.toByteArray()));
+            assertSamePosition(game, legacy);
+            //play on from the migrated game and save it in the new format
+            randomGame(random, legacy, 10);
+            assertSameGame(legacy, GameReader.load(new ByteArrayInputStream(write(legacy))));
+        }
+    }
+}
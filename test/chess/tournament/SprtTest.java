@@ -0,0 +1,54 @@
+package chess.tournament;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Checks the test against values worked out by hand with the normal
+ * approximation, LLR = n (s1 - s0) (2s - s0 - s1) / 2 var, which the half
+ * games added by {@code llr} barely change once a few thousand games are
+ * played.
+ *
+ * @author Jurgen Aliaj
+ */
+public class SprtTest {
+
+    private static final double DELTA = 0.01;
+    private final Sprt sprt = new Sprt(0, 5, 0.05, 0.05);
+
+    @Test
+    public void bounds() {
+        //log(0.05 / 0.95) and log(0.95 / 0.05)
+        assertEquals(-2.944, sprt.getLowerBound(), 0.001);
+        assertEquals(2.944, sprt.getUpperBound(), 0.001);
+    }
+
+    @Test
+    public void llr() {
+        assertEquals(0, sprt.llr(0, 0, 0), 0);
+        //an even score is nearer elo0, but not by enough to decide
+        assertEquals(-0.828, sprt.llr(1000, 2000, 1000), DELTA);
+        assertEquals(1.983, sprt.llr(1100, 2000, 1000), DELTA);
+        assertEquals(-3.643, sprt.llr(1000, 2000, 1100), DELTA);
+        assertEquals(3.688, sprt.llr(2600, 5000, 2400), DELTA);
+        assertEquals(-7.833, sprt.llr(2400, 5000, 2600), DELTA);
+    }
+
+    @Test
+    public void decide() {
+        assertEquals(Sprt.Decision.CONTINUE, sprt.decide(0, 0, 0));
+        assertEquals(Sprt.Decision.CONTINUE, sprt.decide(1000, 2000, 1000));
+        assertEquals(Sprt.Decision.CONTINUE, sprt.decide(1100, 2000, 1000));
+        assertEquals(Sprt.Decision.REJECT, sprt.decide(1000, 2000, 1100));
+        assertEquals(Sprt.Decision.ACCEPT, sprt.decide(2600, 5000, 2400));
+        assertEquals(Sprt.Decision.REJECT, sprt.decide(2400, 5000, 2600));
+    }
+
+    @Test
+    public void elo() {
+        assertEquals(0, Sprt.elo(10, 20, 10), 1e-9);
+        //a score of 75% is 400 log10(3)
+        assertEquals(190.85, Sprt.elo(60, 30, 10), DELTA);
+        assertEquals(62.05, Sprt.eloMargin(60, 30, 10), DELTA);
+    }
+}